@@ -0,0 +1,54 @@
+package com.ahhmino.trivia;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Judging one chat message against a free-text answer, as every chat thread does for every
+ * message while a question is up. Run with {@code -prof gc}: the {@link AnswerMatcher} cases
+ * should show no allocation per operation, against the original normalize-then-lookup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AnswerMatchBenchmark {
+
+    @Param({"exact", "typo", "miss", "chatter"})
+    public String message;
+
+    private String text;
+    private AnswerMatcher matcher;
+    private ActiveQuestion choices;
+
+    @Setup
+    public void setup() {
+        String answer = "The Treaty of Versailles";
+        matcher = AnswerMatcher.of(List.of(answer, "Versailles"), 2);
+        choices = new ActiveQuestion(
+                new TriviaQuestion("Which treaty ended the First World War?",
+                        List.of("Treaty of Paris", answer, "Treaty of Ghent", "Treaty of Utrecht"), 1),
+                null, null);
+        text = switch (message) {
+            case "exact" -> "treaty of versailles";
+            case "typo" -> "Treaty of Versaille!";
+            case "miss" -> "treaty of utrecht";
+            default -> "lol does anyone know where the nether fortress is, i've been looking for ages";
+        };
+    }
+
+    /** Original multiple-choice judging: build a normalized string, then a map lookup. */
+    @Benchmark
+    public boolean normalizeThenLookup() {
+        return choices.isCorrect(text);
+    }
+
+    @Benchmark
+    public boolean boundedEditDistance() {
+        return matcher.matches(text);
+    }
+}
@@ -0,0 +1,39 @@
+package com.ahhmino.trivia;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Base64 field decoding over every field of a 500-question response. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DecodeBenchmark {
+
+    private String[] fields;
+    private OpenTdbParser parser;
+
+    @Setup
+    public void setup() {
+        List<String> all = Fixtures.encodedFields(Fixtures.response(500));
+        fields = all.toArray(new String[0]);
+        parser = new OpenTdbParser("base64");
+    }
+
+    /** The original decodeB64: a fresh decoder output array per field. */
+    @Benchmark
+    public void jdk(Blackhole bh) {
+        for (String f : fields) bh.consume(ParseBenchmark.decodeB64(f));
+    }
+
+    /** {@link OpenTdbParser#decodeBase64}: the same decoder writing into one reused scratch buffer. */
+    @Benchmark
+    public void scratch(Blackhole bh) {
+        for (String f : fields) bh.consume(parser.decodeBase64(f));
+    }
+}
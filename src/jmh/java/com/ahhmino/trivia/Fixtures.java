@@ -0,0 +1,126 @@
+package com.ahhmino.trivia;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * OpenTriviaDB {@code encode=base64} responses for the benchmarks.
+ *
+ * <p>A recorded payload on the jmh classpath ({@code opentdb-<n>.json}) is used when present.
+ * Otherwise an equivalent one is generated from a fixed seed: same field layout and encoding, a
+ * 3:1 mix of multiple-choice and true/false questions, and text lengths and occasional non-ASCII
+ * characters in line with real responses, so runs stay comparable across machines.
+ */
+final class Fixtures {
+
+    private static final String[] WORDS = {
+            "which", "of", "the", "following", "is", "was", "first", "largest", "capital", "country",
+            "album", "released", "in", "what", "year", "did", "who", "wrote", "novel", "element",
+            "symbol", "planet", "orbit", "character", "series", "game", "Pokémon", "Zürich", "café",
+            "&quot;quoted&quot;", "named", "after", "known", "as", "how", "many", "sides", "does", "a",
+            "dodecahedron", "have", "“Noir”", "director", "film", "won", "award", "team", "league"
+    };
+
+    private Fixtures() {
+    }
+
+    /** The raw response body for {@code n} questions. */
+    static byte[] response(int n) {
+        try (InputStream in = Fixtures.class.getResourceAsStream("/opentdb-" + n + ".json")) {
+            if (in != null) return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return synthetic(n).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Every base64 string field of a response, in document order. */
+    static List<String> encodedFields(byte[] response) {
+        List<String> out = new ArrayList<>();
+        JsonObject root = JsonParser.parseString(new String(response, StandardCharsets.UTF_8)).getAsJsonObject();
+        for (JsonElement e : root.getAsJsonArray("results")) {
+            JsonObject o = e.getAsJsonObject();
+            for (String key : o.keySet()) {
+                JsonElement v = o.get(key);
+                if (v.isJsonArray()) {
+                    for (JsonElement a : v.getAsJsonArray()) out.add(a.getAsString());
+                } else {
+                    out.add(v.getAsString());
+                }
+            }
+        }
+        return out;
+    }
+
+    /** Decoded questions of a response: {question, correct, incorrect...} per entry. */
+    static List<String[]> decodedQuestions(byte[] response) {
+        List<String[]> out = new ArrayList<>();
+        Base64.Decoder b64 = Base64.getDecoder();
+        JsonObject root = JsonParser.parseString(new String(response, StandardCharsets.UTF_8)).getAsJsonObject();
+        for (JsonElement e : root.getAsJsonArray("results")) {
+            JsonObject o = e.getAsJsonObject();
+            JsonArray wrong = o.getAsJsonArray("incorrect_answers");
+            String[] q = new String[2 + wrong.size()];
+            q[0] = new String(b64.decode(o.get("question").getAsString()), StandardCharsets.UTF_8);
+            q[1] = new String(b64.decode(o.get("correct_answer").getAsString()), StandardCharsets.UTF_8);
+            for (int i = 0; i < wrong.size(); i++) {
+                q[2 + i] = new String(b64.decode(wrong.get(i).getAsString()), StandardCharsets.UTF_8);
+            }
+            out.add(q);
+        }
+        return out;
+    }
+
+    private static String synthetic(int n) {
+        Random rnd = new Random(n);
+        JsonArray results = new JsonArray();
+        for (int i = 0; i < n; i++) {
+            boolean bool = rnd.nextInt(4) == 0;
+            JsonObject o = new JsonObject();
+            o.addProperty("type", b64(bool ? "boolean" : "multiple"));
+            o.addProperty("difficulty", b64(new String[]{"easy", "medium", "hard"}[rnd.nextInt(3)]));
+            o.addProperty("category", b64("Entertainment: Video Games"));
+            o.addProperty("question", b64(sentence(rnd, 8 + rnd.nextInt(22)) + "?"));
+            JsonArray wrong = new JsonArray();
+            if (bool) {
+                boolean t = rnd.nextBoolean();
+                o.addProperty("correct_answer", b64(t ? "True" : "False"));
+                wrong.add(b64(t ? "False" : "True"));
+            } else {
+                o.addProperty("correct_answer", b64(sentence(rnd, 1 + rnd.nextInt(3))));
+                for (int w = 0; w < 3; w++) wrong.add(b64(sentence(rnd, 1 + rnd.nextInt(3))));
+            }
+            o.add("incorrect_answers", wrong);
+            results.add(o);
+        }
+        JsonObject root = new JsonObject();
+        root.addProperty("response_code", 0);
+        root.add("results", results);
+        return root.toString();
+    }
+
+    private static String sentence(Random rnd, int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(WORDS[rnd.nextInt(WORDS.length)]);
+        }
+        sb.setCharAt(0, Character.toUpperCase(sb.charAt(0)));
+        return sb.toString();
+    }
+
+    private static String b64(String s) {
+        return Base64.getEncoder().encodeToString(s.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,94 @@
+package com.ahhmino.trivia;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap held by a bank of 100k questions: the original {@code String} + {@code List<String>}
+ * layout against the packed {@link TriviaQuestion}. Each run builds the bank once and reports the
+ * heap retained after a full GC as the {@code retainedBytes} counter (run with {@code -prof gc}
+ * for allocation rates as well). Both layouts copy every string first, as parsing a response does.
+ * The {@link AnswerDictionary} outlives an iteration, so after warmup its shared answers are not
+ * counted against the compact bank.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-XX:+UseSerialGC")
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class FootprintBenchmark {
+
+    private static final int QUESTIONS = 100_000;
+
+    @State(Scope.Benchmark)
+    public static class Bank {
+        String[][] questions;
+
+        @Setup
+        public void setup() {
+            questions = Fixtures.decodedQuestions(Fixtures.response(QUESTIONS)).toArray(new String[0][]);
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Retained {
+        public long retainedBytes;
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private long before;
+
+        @Setup(Level.Iteration)
+        public void start() {
+            before = usedAfterGc();
+        }
+
+        void measure(Object bank) {
+            retainedBytes = usedAfterGc() - before;
+            if (bank.hashCode() == 42) retainedBytes++; // keep the bank reachable through the GC
+        }
+
+        private long usedAfterGc() {
+            for (int i = 0; i < 3; i++) System.gc();
+            return memory.getHeapMemoryUsage().getUsed();
+        }
+    }
+
+    /** The original layout: a question string and a shuffled {@code ArrayList} of choice strings. */
+    record LegacyQuestion(String question, List<String> choices, int correctIndex) {
+    }
+
+    @Benchmark
+    public Object legacy(Bank bank, Retained retained) {
+        List<LegacyQuestion> out = new ArrayList<>(QUESTIONS);
+        for (String[] q : bank.questions) {
+            List<String> choices = new ArrayList<>(q.length - 1);
+            for (int i = 1; i < q.length; i++) choices.add(copy(q[i]));
+            out.add(new LegacyQuestion(copy(q[0]), choices, 0));
+        }
+        retained.measure(out);
+        return out;
+    }
+
+    @Benchmark
+    public Object compact(Bank bank, Retained retained) {
+        List<TriviaQuestion> out = new ArrayList<>(QUESTIONS);
+        for (String[] q : bank.questions) {
+            List<String> incorrect = new ArrayList<>(q.length - 2);
+            for (int i = 2; i < q.length; i++) incorrect.add(copy(q[i]));
+            out.add(OpenTdbParser.shuffled(copy(q[0]), copy(q[1]), incorrect));
+        }
+        retained.measure(out);
+        return out;
+    }
+
+    /** A string with its own backing array, as decoding a response produces ({@code new String(s)} shares it). */
+    private static String copy(String s) {
+        return new String(s.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+    }
+}
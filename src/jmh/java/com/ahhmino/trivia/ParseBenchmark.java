@@ -0,0 +1,76 @@
+package com.ahhmino.trivia;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole-response parsing: the original Gson tree path against the streaming {@link OpenTdbParser}.
+ *
+ * <p>What streaming still allocates is mostly strings: {@code JsonReader.nextString()} copies every
+ * raw field into one before it is decoded, and Gson offers no way to read from its buffer instead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ParseBenchmark {
+
+    @Param({"50", "500", "5000"})
+    public int questions;
+
+    private byte[] body;
+
+    @Setup
+    public void setup() {
+        body = Fixtures.response(questions);
+    }
+
+    /** Body as one String, a Gson tree, java.util.Base64 per field, shuffle then indexOf. */
+    @Benchmark
+    public void tree(Blackhole bh) {
+        JsonObject root = JsonParser.parseString(new String(body, StandardCharsets.UTF_8)).getAsJsonObject();
+        bh.consume(root.get("response_code").getAsInt());
+        JsonArray results = root.getAsJsonArray("results");
+        for (JsonElement element : results) {
+            JsonObject o = element.getAsJsonObject();
+            String q = decodeB64(o.get("question").getAsString());
+            String correct = decodeB64(o.get("correct_answer").getAsString());
+            List<String> options = new ArrayList<>();
+            for (JsonElement je : o.getAsJsonArray("incorrect_answers")) options.add(decodeB64(je.getAsString()));
+            options.add(correct);
+            Collections.shuffle(options, ThreadLocalRandom.current());
+            bh.consume(new TriviaQuestion(q, options, options.indexOf(correct)));
+        }
+    }
+
+    /** Streamed from the body bytes with the scratch-buffer decoder. */
+    @Benchmark
+    public int streaming(Blackhole bh) throws IOException {
+        OpenTdbParser parser = new OpenTdbParser("base64");
+        return parser.parse(new ByteArrayInputStream(body), (q, difficulty, type) -> bh.consume(q));
+    }
+
+    static String decodeB64(String s) {
+        try {
+            return new String(Base64.getDecoder().decode(s), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return s;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.ahhmino.trivia;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queue handoff with three fetch threads publishing 50-question chunks while one consumer polls:
+ * the lock-free {@link QuestionPipeline} against an ArrayDeque behind a lock. Producers hold off
+ * once the backlog passes {@link #BACKLOG}, so the benchmark measures handoff, not heap growth.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PipelineBenchmark {
+
+    private static final int BACKLOG = 10_000;
+
+    private QuestionPipeline pipeline;
+    private ArrayDeque<TriviaQuestion> deque;
+    private List<TriviaQuestion> chunk;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        pipeline = new QuestionPipeline();
+        deque = new ArrayDeque<>();
+        chunk = new ArrayList<>(50);
+        for (String[] q : Fixtures.decodedQuestions(Fixtures.response(50))) {
+            chunk.add(OpenTdbParser.shuffled(q[0], q[1], List.of(q).subList(2, q.length)));
+        }
+    }
+
+    @Benchmark
+    @Group("pipeline")
+    @GroupThreads(3)
+    public boolean pipelinePublish() {
+        return pipeline.size() < BACKLOG && pipeline.publish(pipeline.generation(), chunk);
+    }
+
+    @Benchmark
+    @Group("pipeline")
+    @GroupThreads(1)
+    public TriviaQuestion pipelinePoll() {
+        return pipeline.poll();
+    }
+
+    @Benchmark
+    @Group("lockedDeque")
+    @GroupThreads(3)
+    public boolean dequePublish() {
+        synchronized (deque) {
+            return deque.size() < BACKLOG && deque.addAll(chunk);
+        }
+    }
+
+    @Benchmark
+    @Group("lockedDeque")
+    @GroupThreads(1)
+    public TriviaQuestion dequePoll() {
+        synchronized (deque) {
+            return deque.pollFirst();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.ahhmino.trivia;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/** Building {@link TriviaQuestion}s with shuffled choices from already-decoded fields. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class QuestionBuildBenchmark {
+
+    private String[][] questions;
+    private List<List<String>> incorrect;
+
+    @Setup
+    public void setup() {
+        questions = Fixtures.decodedQuestions(Fixtures.response(500)).toArray(new String[0][]);
+        incorrect = new ArrayList<>(questions.length);
+        for (String[] q : questions) incorrect.add(Arrays.asList(q).subList(2, q.length));
+    }
+
+    /** Original: add everything, shuffle, then find the correct answer again with indexOf. */
+    @Benchmark
+    public void shuffleThenIndexOf(Blackhole bh) {
+        for (int i = 0; i < questions.length; i++) {
+            String[] q = questions[i];
+            List<String> options = new ArrayList<>(incorrect.get(i));
+            options.add(q[1]);
+            Collections.shuffle(options, ThreadLocalRandom.current());
+            bh.consume(new TriviaQuestion(q[0], options, options.indexOf(q[1])));
+        }
+    }
+
+    /** {@link OpenTdbParser#shuffled}: shuffle the wrong answers, insert the right one at a random slot. */
+    @Benchmark
+    public void insertAtRandomSlot(Blackhole bh) {
+        for (int i = 0; i < questions.length; i++) {
+            String[] q = questions[i];
+            bh.consume(OpenTdbParser.shuffled(q[0], q[1], incorrect.get(i)));
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.ahhmino.trivia;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+import org.bukkit.ChatColor;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting one question for broadcast: the original per-line prefixed strings against the
+ * pre-parsed prefix and single component of {@link QuestionRenderer}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RenderBenchmark {
+
+    private static final String PREFIX = "&dTrivia:&r ";
+
+    private TriviaQuestion question;
+    private QuestionRenderer renderer;
+
+    @Setup
+    public void setup() {
+        String[] q = Fixtures.decodedQuestions(Fixtures.response(50)).get(0);
+        question = OpenTdbParser.shuffled(q[0], q[1], List.of(q).subList(2, q.length));
+        renderer = new QuestionRenderer(PREFIX, false);
+    }
+
+    /** Original broadcastPrefixed: translate the prefix and build player and console strings per line. */
+    @Benchmark
+    public void legacyStrings(Blackhole bh) {
+        legacyLine(bh, ChatColor.LIGHT_PURPLE + "Question: " + ChatColor.RESET + question.question());
+        List<String> choices = question.choices();
+        for (int i = 0; i < choices.size(); i++) {
+            legacyLine(bh, ChatColor.GRAY + "  " + QuestionRenderer.LETTERS[i] + ") " + ChatColor.WHITE + choices.get(i));
+        }
+    }
+
+    private static void legacyLine(Blackhole bh, String message) {
+        String prefix = ChatColor.translateAlternateColorCodes('&', PREFIX);
+        bh.consume(prefix + message);
+        bh.consume(prefix + ChatColor.stripColor(message));
+    }
+
+    /** The whole question as one component, built from the prefix parsed at config load. */
+    @Benchmark
+    public Component component() {
+        return renderer.question(question, question.choices());
+    }
+
+    /** Prefix translation alone, legacy string form. */
+    @Benchmark
+    public String prefixLegacy() {
+        return ChatColor.translateAlternateColorCodes('&', PREFIX);
+    }
+
+    /** Prefix translation alone, to a component (now done once per config load). */
+    @Benchmark
+    public Component prefixComponent() {
+        return LegacyComponentSerializer.legacyAmpersand().deserialize(PREFIX);
+    }
+}
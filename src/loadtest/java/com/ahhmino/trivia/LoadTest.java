@@ -0,0 +1,273 @@
+package com.ahhmino.trivia;
+
+import io.papermc.paper.chat.ChatRenderer;
+import io.papermc.paper.event.player.AsyncChatEvent;
+import net.kyori.adventure.audience.Audience;
+import net.kyori.adventure.chat.SignedMessage;
+import net.kyori.adventure.text.Component;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.mockbukkit.mockbukkit.MockBukkit;
+import org.mockbukkit.mockbukkit.ServerMock;
+import org.mockbukkit.mockbukkit.entity.PlayerMock;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Headless end-to-end load test: boots the plugin on MockBukkit against a {@link StandInOpenTdb},
+ * joins simulated players and drives the scheduler tick by tick through a number of rounds, while
+ * a pool of chat threads feeds {@link TriviaPlugin#onChat} a mix of answers and chatter. Reports
+ * the main thread's cost per tick, what a round allocates and how often questions were fetched.
+ *
+ * <pre>
+ *   ./gradlew loadTest -PloadTestPlayers=1000 -PloadTestRounds=300 -PloadTestMaxTickMs=2
+ * </pre>
+ *
+ * Arguments are {@code name=value}: {@code players} (500), {@code rounds} (200), {@code warmup}
+ * rounds left out of the report (10), {@code chat} messages per tick (25), {@code answer_share} of
+ * them that are a choice letter (0.3), {@code answer_seconds} (10), {@code between_seconds} (3),
+ * {@code fetch_latency_ms} of the stand-in (150), {@code tick_ms} (0) and {@code max_tick_ms} (0).
+ *
+ * <p>Early reveal is off, so every round keeps its question up for the whole window: the busiest
+ * case for the chat path. Ticks run back to back unless {@code tick_ms} paces them; fetching and
+ * prefetch run on wall-clock time, so fetch counts are only representative at {@code tick_ms=50}.
+ * With {@code max_tick_ms} set, the run fails if the plugin's 99th percentile tick is slower.
+ */
+public final class LoadTest {
+
+    private static final String[] CHATTER = {
+            "gg", "lol", "anyone selling diamonds?", "brb", "what's the answer lmao", "no way",
+            "tpa me pls", "is the nether reset today", "hi all", "ez", "this one's hard", "?"
+    };
+    private static final int CHAT_THREADS = 4;
+    private static final int DRAIN_EVERY_TICKS = 20;
+    private static final long STALL_NANOS = 30_000_000_000L;
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                System.err.println("Arguments are name=value, e.g. players=500 rounds=200; got " + arg);
+                System.exit(2);
+            }
+            opts.put(arg.substring(0, eq).trim().toLowerCase(Locale.ROOT), arg.substring(eq + 1).trim());
+        }
+        int players = intOpt(opts, "players", 500);
+        int rounds = Math.max(1, intOpt(opts, "rounds", 200));
+        int warmup = Math.max(0, intOpt(opts, "warmup", 10));
+        int chatPerTick = Math.max(0, intOpt(opts, "chat", 25));
+        double answerShare = doubleOpt(opts, "answer_share", 0.3);
+        int answerSeconds = Math.max(1, intOpt(opts, "answer_seconds", 10));
+        int betweenSeconds = Math.max(0, intOpt(opts, "between_seconds", 3));
+        int fetchLatencyMillis = intOpt(opts, "fetch_latency_ms", 150);
+        int tickMillis = intOpt(opts, "tick_ms", 0);
+        double maxTickMillis = doubleOpt(opts, "max_tick_ms", 0);
+
+        ServerMock server = MockBukkit.mock();
+        AtomicInteger chatThreads = new AtomicInteger();
+        ExecutorService chat = Executors.newFixedThreadPool(CHAT_THREADS,
+                r -> new Thread(r, "Async Chat Thread - #" + chatThreads.getAndIncrement()));
+        boolean passed;
+        try (StandInOpenTdb opentdb = new StandInOpenTdb(fetchLatencyMillis)) {
+            TriviaPlugin plugin = MockBukkit.load(TriviaPlugin.class);
+            FileConfiguration cfg = plugin.getConfig();
+            cfg.set("opentdb.url", opentdb.url());
+            cfg.set("opentdb.rate_limit_seconds", 0);
+            cfg.set("answer_delay_seconds", answerSeconds);
+            cfg.set("between_questions_delay_seconds", betweenSeconds);
+            cfg.set("answers.early_reveal", false);
+            plugin.saveConfig();
+
+            List<PlayerMock> online = new ArrayList<>(players);
+            for (int i = 0; i < players; i++) online.add(server.addPlayer());
+            server.dispatchCommand(server.getConsoleSender(), "trivia reload");
+            server.dispatchCommand(server.getConsoleSender(), "trivia enable");
+            TriviaSession session = plugin.session(SessionConfig.GLOBAL);
+
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            LongAdder chatBytes = new LongAdder();
+            LongAdder chatMessages = new LongAdder();
+            Histogram serverTick = new Histogram();
+            List<Future<?>> pending = new ArrayList<>();
+
+            Histogram.Snapshot pluginTickBefore = null;
+            long mainBytes = 0, chatBytesBefore = 0, chatMessagesBefore = 0, gcBefore = 0, gcMillisBefore = 0;
+            long requestsBefore = 0, tokensBefore = 0, servedBefore = 0, fetchedBefore = 0, ticks = 0, allTicks = 0;
+            long measuredNanos = 0;
+            long lastRound = 0, lastProgress = System.nanoTime();
+
+            while (true) {
+                long round = session.round();
+                if (round != lastRound) {
+                    lastRound = round;
+                    lastProgress = System.nanoTime();
+                    if (round == warmup + 1) {
+                        pluginTickBefore = plugin.metrics().tickTime.snapshot();
+                        chatBytesBefore = chatBytes.sum();
+                        chatMessagesBefore = chatMessages.sum();
+                        gcBefore = gcCount();
+                        gcMillisBefore = gcMillis();
+                        requestsBefore = opentdb.questionRequests.sum();
+                        tokensBefore = opentdb.tokenRequests.sum();
+                        servedBefore = opentdb.questionsServed.sum();
+                        fetchedBefore = plugin.metrics().questionsFetched.sum();
+                    }
+                    if (round == warmup + rounds + 1) break;
+                } else if (System.nanoTime() - lastProgress > STALL_NANOS) {
+                    System.err.println("No new round for " + STALL_NANOS / 1_000_000_000 + "s; stuck at round " + round
+                            + " (" + session.status() + ").");
+                    System.exit(1);
+                }
+                boolean measuring = pluginTickBefore != null;
+
+                long start = System.nanoTime();
+                long allocated = threads.getCurrentThreadAllocatedBytes();
+                server.getScheduler().performOneTick();
+                long elapsed = System.nanoTime() - start;
+                if (measuring) {
+                    mainBytes += threads.getCurrentThreadAllocatedBytes() - allocated;
+                    serverTick.record(elapsed);
+                    measuredNanos += elapsed;
+                    ticks++;
+                }
+
+                // Each tick's chat runs alongside the next tick, as Paper's async chat threads do
+                for (Future<?> f : pending) f.get();
+                pending.clear();
+                for (int i = 0; i < chatPerTick; i++) {
+                    PlayerMock player = online.get(ThreadLocalRandom.current().nextInt(online.size()));
+                    String message = message(answerShare);
+                    pending.add(chat.submit(() -> {
+                        AsyncChatEvent event = chatEvent(player, message);
+                        long before = threads.getCurrentThreadAllocatedBytes();
+                        plugin.onChat(event);
+                        chatBytes.add(threads.getCurrentThreadAllocatedBytes() - before);
+                        chatMessages.increment();
+                    }));
+                }
+
+                if (++allTicks % DRAIN_EVERY_TICKS == 0) {
+                    for (PlayerMock p : online) {
+                        while (p.nextComponentMessage() != null) {
+                            // players keep every message they are sent; drop them between measurements
+                        }
+                    }
+                }
+                if (tickMillis > 0) {
+                    long left = tickMillis * 1_000_000L - (System.nanoTime() - start);
+                    if (left > 0) Thread.sleep(left / 1_000_000, (int) (left % 1_000_000));
+                }
+            }
+            for (Future<?> f : pending) f.get();
+
+            Histogram.Snapshot pluginTick = since(pluginTickBefore, plugin.metrics().tickTime.snapshot());
+            Histogram.Snapshot wholeTick = serverTick.snapshot();
+            long messages = chatMessages.sum() - chatMessagesBefore;
+            long requests = opentdb.questionRequests.sum() - requestsBefore;
+
+            System.out.println();
+            System.out.printf(Locale.ROOT, "Trivia load test: %d players, %d rounds (+%d warmup), %d chat messages/tick, %d ms fetch latency%n",
+                    players, rounds, warmup, chatPerTick, fetchLatencyMillis);
+            System.out.printf(Locale.ROOT, "  ticks          %d in %.1fs of main-thread time, %.1f per round%n",
+                    ticks, measuredNanos / 1e9, (double) ticks / rounds);
+            System.out.println("  plugin tick    " + millis(pluginTick));
+            System.out.println("  server tick    " + millis(wholeTick) + "  (scheduler and mock players included)");
+            System.out.println("  broadcast      " + millis(plugin.metrics().broadcastTime.snapshot()) + "  (whole run)");
+            System.out.printf(Locale.ROOT, "  allocated      %s/round on the main thread, %s/round on chat threads (%s/message, %d messages)%n",
+                    bytes(mainBytes / rounds), bytes((chatBytes.sum() - chatBytesBefore) / rounds),
+                    bytes(messages == 0 ? 0 : (chatBytes.sum() - chatBytesBefore) / messages), messages);
+            System.out.printf(Locale.ROOT, "  gc             %d collections, %d ms%n", gcCount() - gcBefore, gcMillis() - gcMillisBefore);
+            System.out.printf(Locale.ROOT, "  fetches        %d question requests (%.2f/round), %d token requests, %d questions served, %d accepted%n",
+                    requests, (double) requests / rounds, opentdb.tokenRequests.sum() - tokensBefore,
+                    opentdb.questionsServed.sum() - servedBefore, plugin.metrics().questionsFetched.sum() - fetchedBefore);
+            System.out.println("  session        " + session.status());
+
+            double p99 = pluginTick.quantile(0.99) / 1e6;
+            passed = maxTickMillis <= 0 || p99 <= maxTickMillis;
+            if (!passed) {
+                System.out.printf(Locale.ROOT, "FAILED: plugin tick p99 %.3f ms is over the %.3f ms budget%n", p99, maxTickMillis);
+            }
+        } finally {
+            chat.shutdownNow();
+            MockBukkit.unmock();
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static String message(double answerShare) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        if (rnd.nextDouble() < answerShare) {
+            String letter = String.valueOf((char) ('A' + rnd.nextInt(4)));
+            return rnd.nextBoolean() ? letter : letter.toLowerCase(Locale.ROOT);
+        }
+        return CHATTER[rnd.nextInt(CHATTER.length)];
+    }
+
+    private static AsyncChatEvent chatEvent(PlayerMock player, String message) {
+        Component text = Component.text(message);
+        return new AsyncChatEvent(true, player, new HashSet<Audience>(), ChatRenderer.defaultRenderer(), text, text,
+                SignedMessage.system(message, text));
+    }
+
+    /** What was recorded between two snapshots; the max is the top of the highest bucket used. */
+    private static Histogram.Snapshot since(Histogram.Snapshot before, Histogram.Snapshot after) {
+        long[] counts = new long[after.counts().length];
+        long top = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = after.counts()[i] - before.counts()[i];
+            if (counts[i] > 0) top = i + 1 < counts.length ? Histogram.lowerBound(i + 1) - 1 : Long.MAX_VALUE;
+        }
+        return new Histogram.Snapshot(counts, after.count() - before.count(), after.sum() - before.sum(),
+                Math.min(top, after.max()));
+    }
+
+    private static String millis(Histogram.Snapshot s) {
+        if (s.count() == 0) return "no samples";
+        return String.format(Locale.ROOT, "mean %.3f ms, p50 %.3f ms, p99 %.3f ms, max %.3f ms",
+                s.sum() / 1e6 / s.count(), s.quantile(0.5) / 1e6, s.quantile(0.99) / 1e6, s.max() / 1e6);
+    }
+
+    private static String bytes(long n) {
+        if (n < 10 * 1024) return n + " B";
+        if (n < 10L * 1024 * 1024) return (n / 1024) + " KB";
+        return (n / (1024 * 1024)) + " MB";
+    }
+
+    private static long gcCount() {
+        long n = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) n += Math.max(0, gc.getCollectionCount());
+        return n;
+    }
+
+    private static long gcMillis() {
+        long n = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) n += Math.max(0, gc.getCollectionTime());
+        return n;
+    }
+
+    private static int intOpt(Map<String, String> opts, String key, int def) {
+        String v = opts.get(key);
+        return v == null || v.isEmpty() ? def : Integer.parseInt(v);
+    }
+
+    private static double doubleOpt(Map<String, String> opts, String key, double def) {
+        String v = opts.get(key);
+        return v == null || v.isEmpty() ? def : Double.parseDouble(v);
+    }
+}
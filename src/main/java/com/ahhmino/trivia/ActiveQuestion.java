@@ -0,0 +1,174 @@
+package com.ahhmino.trivia;
+
+import net.kyori.adventure.text.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A session's question currently on screen, shared between the main thread and the async chat
+ * threads.
+ *
+ * <p>Everything needed to show and judge the question is computed once, on the main thread, when
+ * it is dequeued: its {@linkplain #choices() decoded choices}, a map from normalized answer text
+ * (and choice letter) to choice index, or for free-text questions an {@link AnswerMatcher} over
+ * the answer and its aliases. After that the object is only read, except for the winner slot and
+ * the revealed flag. The winner slot is decided by one compare-and-set: the first correct answer
+ * fills it, unless the reveal has already closed it with a sentinel, so a win is never recorded for
+ * a round that was revealed unsolved. The chat thread only records the win; the session announces
+ * it from its next tick.
+ *
+ * <p>A question shown on behalf of a cluster leader is {@linkplain #isRemote() remote}: the leader
+ * decides its winner, so a correct answer here is only {@linkplain #tryClaim() claimed} and sent on.
+ */
+final class ActiveQuestion {
+
+    /** The first correct answer of the round; {@code origin} is the cluster node the player is on, null for this server. */
+    record Win(UUID player, String name, long millis, String origin) {}
+
+    enum Verdict { CORRECT, WRONG, NOT_AN_ANSWER }
+
+    private static final Win REVEALED = new Win(new UUID(0, 0), "", -1, null); // closes the winner slot
+
+    private final TriviaQuestion question;
+    private final List<String> choices;
+    private final long round;
+    private final boolean remote;
+    private final Component answerMessage;
+    private final Map<String, Integer> lookup; // null for free-text questions
+    private final AnswerMatcher typed;         // null for multiple-choice questions
+    private final long shownAtNanos = System.nanoTime();
+
+    private final AtomicReference<Win> winner = new AtomicReference<>();
+    private final AtomicBoolean revealed = new AtomicBoolean();
+    private final AtomicBoolean claimed = new AtomicBoolean();
+
+    ActiveQuestion(TriviaQuestion question, Component answerMessage, AnswerMatcher typed) {
+        this(question, question.choices(), 0, false, answerMessage, typed);
+    }
+
+    /**
+     * @param choices {@code question.choices()}, already decoded by the caller
+     * @param round   the session's round number, shared across the cluster
+     * @param remote  asked by the cluster leader rather than this server
+     * @param typed   judges free-text answers, or null to accept a choice's letter or text
+     */
+    ActiveQuestion(TriviaQuestion question, List<String> choices, long round, boolean remote, Component answerMessage,
+                   AnswerMatcher typed) {
+        this.question = question;
+        this.choices = choices;
+        this.round = round;
+        this.remote = remote;
+        this.answerMessage = answerMessage;
+        this.typed = typed;
+        if (typed != null) {
+            this.lookup = null;
+            return;
+        }
+
+        Map<String, Integer> map = new HashMap<>(choices.size() * 4);
+        // letters first so they win if a choice's text happens to be a bare letter
+        for (int i = 0; i < choices.size(); i++) {
+            map.put(String.valueOf(Character.toLowerCase(QuestionRenderer.LETTERS[i])), i);
+        }
+        for (int i = 0; i < choices.size(); i++) {
+            String key = normalize(choices.get(i));
+            if (!key.isEmpty()) map.putIfAbsent(key, i);
+        }
+        this.lookup = map;
+    }
+
+    TriviaQuestion question() { return question; }
+    /** The choices in display order, decoded once for the round. */
+    List<String> choices() { return choices; }
+    Component answerMessage() { return answerMessage; }
+    long round() { return round; }
+    boolean isRemote() { return remote; }
+
+    /** Choice index the message names, or -1 if it isn't an answer (always -1 for free-text questions). */
+    int match(String message) {
+        if (lookup == null) return -1;
+        Integer idx = lookup.get(normalize(message));
+        return idx == null ? -1 : idx;
+    }
+
+    boolean isCorrect(String message) {
+        return judge(message) == Verdict.CORRECT;
+    }
+
+    /** In free-text mode every message is an answer; otherwise only one that names a choice. */
+    Verdict judge(String message) {
+        if (typed != null) return typed.matches(message) ? Verdict.CORRECT : Verdict.WRONG;
+        int idx = match(message);
+        if (idx < 0) return Verdict.NOT_AN_ANSWER;
+        return idx == question.correctIndex() ? Verdict.CORRECT : Verdict.WRONG;
+    }
+
+    /** Claims the win for {@code player}; non-null for exactly one caller, and never after the reveal. */
+    Win tryWin(UUID player, String name) {
+        return tryWin(new Win(player, name, elapsedMillis(), null));
+    }
+
+    /** Claims the win with a time and origin decided elsewhere (a cluster claim or the leader's verdict). */
+    Win tryWin(Win win) {
+        return winner.compareAndSet(null, win) ? win : null;
+    }
+
+    /**
+     * True for the first correct answer on this server to a remote question. Later ones can't win:
+     * they would reach the leader after this one.
+     */
+    boolean tryClaim() {
+        return !revealed.get() && claimed.compareAndSet(false, true);
+    }
+
+    Win winner() {
+        Win win = winner.get();
+        return win == REVEALED ? null : win;
+    }
+
+    /**
+     * Ends the round: no answer can win after this returns. True for exactly one caller, whoever
+     * gets to broadcast the answer.
+     */
+    boolean markRevealed() {
+        winner.compareAndSet(null, REVEALED);
+        return revealed.compareAndSet(false, true);
+    }
+
+    long elapsedMillis() {
+        return (System.nanoTime() - shownAtNanos) / 1_000_000L;
+    }
+
+    /** Lower-cases, collapses whitespace and drops surrounding punctuation such as "A)" or "Paris!". */
+    static String normalize(String s) {
+        int start = 0;
+        int end = s.length();
+        while (start < end && isTrim(s.charAt(start))) start++;
+        while (end > start && isTrim(s.charAt(end - 1))) end--;
+
+        StringBuilder sb = new StringBuilder(end - start);
+        boolean space = false;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = true;
+                continue;
+            }
+            if (space) sb.append(' ');
+            space = false;
+            sb.append(c);
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isTrim(char c) {
+        return Character.isWhitespace(c) || c == '.' || c == '!' || c == '?' || c == ')' || c == '('
+                || c == '"' || c == '\'';
+    }
+}
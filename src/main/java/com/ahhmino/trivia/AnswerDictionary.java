@@ -0,0 +1,80 @@
+package com.ahhmino.trivia;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide dictionary of short answers ("True", "1990", "Germany"...) that many questions
+ * share. {@link TriviaQuestion} stores a small id for these instead of the text, and every question
+ * hands out the same {@code String} instance for them.
+ *
+ * <p>Ids are never reused or evicted, so the dictionary is bounded instead: only answers up to
+ * {@link #MAX_BYTES} bytes are interned, only once they've been seen a second time (a one-off
+ * answer would cost more as a dictionary entry than inline), and once {@link #CAPACITY} answers
+ * are known new ones are stored inline by their questions. Lookups are lock-free; adding takes a
+ * lock.
+ */
+final class AnswerDictionary {
+
+    static final int MAX_BYTES = 24;
+    static final int CAPACITY = 1 << 16;
+    private static final int SEEN_BITS = 14;
+
+    // Hashes of answers seen once, one per slot; racy by design, a lost or stale slot only delays
+    // an answer's admission
+    private static final long[] seen = new long[1 << SEEN_BITS];
+
+    private static final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private static volatile String[] answers = new String[256];
+    private static int size; // guarded by the class lock
+
+    static {
+        add("True");
+        add("False");
+    }
+
+    private AnswerDictionary() {
+    }
+
+    /** The answer's id, interning it if there is room; -1 if it must be stored inline. */
+    static int id(String answer) {
+        Integer id = ids.get(answer);
+        if (id != null) return id;
+        if (answer.length() > MAX_BYTES || utf8Length(answer) > MAX_BYTES) return -1;
+        long h = (answer.hashCode() * 0x9E3779B97F4A7C15L) | 1;
+        int slot = (int) (h >>> (64 - SEEN_BITS));
+        if (seen[slot] != h) {
+            seen[slot] = h;
+            return -1;
+        }
+        return add(answer);
+    }
+
+    private static synchronized int add(String answer) {
+        Integer id = ids.get(answer);
+        if (id != null) return id;
+        if (size == CAPACITY) return -1;
+        String[] table = answers;
+        if (size == table.length) table = Arrays.copyOf(table, table.length * 2);
+        table[size] = answer;
+        answers = table; // volatile write publishes the slot before the id can be handed out
+        ids.put(answer, size);
+        return size++;
+    }
+
+    static String get(int id) {
+        return answers[id];
+    }
+
+    static int size() {
+        return ids.size();
+    }
+
+    private static int utf8Length(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80) return s.getBytes(StandardCharsets.UTF_8).length;
+        }
+        return s.length();
+    }
+}
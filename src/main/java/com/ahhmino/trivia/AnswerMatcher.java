@@ -0,0 +1,225 @@
+package com.ahhmino.trivia;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Judges typed answers for free-text questions. The accepted forms (the answer plus any aliases)
+ * are normalized once when the question goes up: case-folded, accents and punctuation removed,
+ * whitespace collapsed and a leading "the", "a" or "an" dropped. A chat message is normalized the
+ * same way into a per-thread buffer and compared with a bit-parallel edit distance (Myers/Hyyrö)
+ * bounded by a typo budget that grows with the answer's length, so judging a message allocates
+ * nothing and costs a few hundred nanoseconds.
+ *
+ * <p>Answers containing a digit must match exactly: "1991" is one edit from "1990" but not a typo.
+ */
+final class AnswerMatcher {
+
+    private static final int MAX_MESSAGE = 256; // longer messages can't be an answer
+    private static final int MAX_PATTERN = 64;  // one machine word of edit-distance state
+    private static final String[] ARTICLES = {"the", "a", "an"};
+
+    // Folded form of every char below FOLD.length: lower-case base letter, ' ' for separators,
+    // 0 for characters that vanish (apostrophes, combining accents)
+    private static final char[] FOLD = new char[0x250];
+    private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[MAX_MESSAGE]);
+
+    static {
+        for (char c = 0; c < FOLD.length; c++) FOLD[c] = foldSlow(c);
+    }
+
+    /** One accepted answer, normalized, with its typo budget and edit-distance masks. */
+    private static final class Form {
+        final char[] text;
+        final int maxEdits;
+        final long[] ascii = new long[128]; // per-character match masks (Myers' Peq)
+        final char[] otherChars;            // non-ASCII characters of the form...
+        final long[] otherMasks;            // ...and their masks
+
+        Form(char[] text, int maxEdits) {
+            this.text = text;
+            this.maxEdits = text.length > MAX_PATTERN ? 0 : maxEdits;
+            StringBuilder others = new StringBuilder();
+            for (char c : text) {
+                if (c >= 128 && others.indexOf(String.valueOf(c)) < 0) others.append(c);
+            }
+            this.otherChars = others.toString().toCharArray();
+            this.otherMasks = new long[otherChars.length];
+            for (int i = 0; i < Math.min(text.length, MAX_PATTERN); i++) {
+                char c = text[i];
+                if (c < 128) {
+                    ascii[c] |= 1L << i;
+                } else {
+                    otherMasks[others.indexOf(String.valueOf(c))] |= 1L << i;
+                }
+            }
+        }
+
+        long mask(char c) {
+            if (c < 128) return ascii[c];
+            for (int i = 0; i < otherChars.length; i++) {
+                if (otherChars[i] == c) return otherMasks[i];
+            }
+            return 0;
+        }
+    }
+
+    private final Form[] forms;
+    private final int limit; // folded messages longer than this can't match any form
+
+    private AnswerMatcher(Form[] forms) {
+        this.forms = forms;
+        int longest = 0;
+        for (Form f : forms) longest = Math.max(longest, f.text.length + f.maxEdits);
+        this.limit = Math.min(MAX_MESSAGE, longest + "the ".length());
+    }
+
+    /**
+     * @param accepted the answer followed by its aliases; blank forms are ignored
+     * @param maxTypos cap on the per-form budget (0 for exact matching only)
+     */
+    static AnswerMatcher of(List<String> accepted, int maxTypos) {
+        Set<String> seen = new LinkedHashSet<>();
+        for (String s : accepted) {
+            for (String variant : variants(s)) {
+                String n = normalize(variant);
+                if (!n.isEmpty()) seen.add(n);
+            }
+        }
+        List<Form> out = new ArrayList<>(seen.size());
+        for (String n : seen) out.add(new Form(n.toCharArray(), budget(n, maxTypos)));
+        return new AnswerMatcher(out.toArray(new Form[0]));
+    }
+
+    /** The answer as written, plus without a trailing "(...)" note and each side of "X / Y". */
+    private static List<String> variants(String answer) {
+        List<String> out = new ArrayList<>(3);
+        out.add(answer);
+        int paren = answer.indexOf('(');
+        if (paren > 0 && answer.endsWith(")")) out.add(answer.substring(0, paren));
+        if (answer.contains(" / ")) out.addAll(Arrays.asList(answer.split(" / ")));
+        return out;
+    }
+
+    /** Typos allowed for a normalized form: none up to 3 chars, one up to 8, then two; none with digits. */
+    private static int budget(String form, int cap) {
+        for (int i = 0; i < form.length(); i++) {
+            if (Character.isDigit(form.charAt(i))) return 0;
+        }
+        int budget = form.length() <= 3 ? 0 : form.length() <= 8 ? 1 : 2;
+        return Math.min(budget, cap);
+    }
+
+    /* ------------------ Matching (async chat threads) ------------------ */
+
+    /** True if the message is one of the accepted forms, within that form's typo budget. */
+    boolean matches(String message) {
+        char[] buf = BUFFER.get();
+        int len = fold(message, buf, limit);
+        if (len <= 0) return false;
+        int start = skipArticle(buf, len);
+        int n = len - start;
+
+        for (Form f : forms) {
+            int diff = n - f.text.length;
+            if (diff > f.maxEdits || -diff > f.maxEdits) continue;
+            if (diff == 0 && Arrays.equals(buf, start, len, f.text, 0, f.text.length)) return true;
+            if (f.maxEdits > 0 && withinDistance(f, buf, start, len)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Hyyrö's bit-vector form of Myers' algorithm for the edit distance between the form and
+     * {@code text[from, to)}, giving up as soon as the distance can no longer come back within
+     * budget.
+     */
+    private static boolean withinDistance(Form f, char[] text, int from, int to) {
+        int m = f.text.length;
+        long high = 1L << (m - 1);
+        long vp = m == 64 ? -1L : (1L << m) - 1;
+        long vn = 0;
+        int score = m;
+        for (int j = from; j < to; j++) {
+            long eq = f.mask(text[j]);
+            long xv = eq | vn;
+            long xh = (((eq & vp) + vp) ^ vp) | eq;
+            long ph = vn | ~(xh | vp);
+            long mh = vp & xh;
+            if ((ph & high) != 0) {
+                score++;
+            } else if ((mh & high) != 0) {
+                score--;
+            }
+            if (score - (to - j - 1) > f.maxEdits) return false;
+            ph = (ph << 1) | 1;
+            mh <<= 1;
+            vp = mh | ~(xv | ph);
+            vn = ph & xv;
+        }
+        return score <= f.maxEdits;
+    }
+
+    /* ------------------ Normalization ------------------ */
+
+    /** The normalized form used for both answers and messages. */
+    static String normalize(String s) {
+        char[] buf = new char[s.length() + 1];
+        int len = fold(s, buf, buf.length);
+        if (len < 0) return "";
+        int start = skipArticle(buf, len);
+        return new String(buf, start, len - start);
+    }
+
+    /**
+     * Folds {@code s} into {@code buf} with single spaces between words and none at either end.
+     * Returns the length, or -1 once it would exceed {@code limit}.
+     */
+    private static int fold(String s, char[] buf, int limit) {
+        int len = 0;
+        boolean space = false;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            char f = c < FOLD.length ? FOLD[c] : foldWide(c);
+            if (f == 0) continue;
+            if (f == ' ') {
+                space = len > 0;
+                continue;
+            }
+            if (len + (space ? 2 : 1) > limit) return -1;
+            if (space) buf[len++] = ' ';
+            space = false;
+            buf[len++] = f;
+        }
+        return len;
+    }
+
+    /** Offset just past a leading article, unless the article is all there is. */
+    private static int skipArticle(char[] buf, int len) {
+        for (String a : ARTICLES) {
+            int n = a.length();
+            if (len <= n + 1 || buf[n] != ' ') continue;
+            boolean match = true;
+            for (int i = 0; i < n && match; i++) match = buf[i] == a.charAt(i);
+            if (match) return n + 1;
+        }
+        return 0;
+    }
+
+    private static char foldWide(char c) {
+        int type = Character.getType(c);
+        if (type == Character.NON_SPACING_MARK || c == '’' || c == '‘') return 0;
+        return Character.isLetterOrDigit(c) ? Character.toLowerCase(c) : ' ';
+    }
+
+    private static char foldSlow(char c) {
+        if (c == '\'' || c == '`' || c == '´') return 0;
+        if (!Character.isLetterOrDigit(c)) return ' ';
+        String base = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return Character.toLowerCase(base.length() == 1 ? base.charAt(0) : c);
+    }
+}
@@ -0,0 +1,212 @@
+package com.ahhmino.trivia;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-player limits on answer attempts for one session: at most N attempts per question, and
+ * optionally a token bucket across questions. Consulted on the async chat thread before any
+ * matching, so a player spamming "A", "B", "C", "D" costs one table probe per message.
+ *
+ * <p>Players live in open-addressing tables of parallel primitive arrays keyed by UUID. Each
+ * entry records the round its attempts were counted in; starting a new question just bumps the
+ * round, which makes every stale count read as zero, so nothing is iterated or cleared between
+ * questions. Entries are removed when the player quits. A separate flag marks a slot as taken, so
+ * every UUID, the nil one included, is a valid key.
+ *
+ * <p>The players are split by UUID hash across {@link #STRIPES} tables, each with its own lock,
+ * so chat threads only wait on each other when two players who share a stripe answer at the same
+ * instant, and never on a single lock for the whole server.
+ */
+final class AnswerThrottle {
+
+    private static final int STRIPES = 16; // a power of two; picked by the top bits of the hash
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final int attemptsPerQuestion; // 0 = unlimited
+    private final long intervalNanos;      // token bucket: one attempt per interval, 0 = off
+    private final long burstNanos;         // how far ahead of now a player may run
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    private volatile int round;
+
+    /**
+     * @param perSecond attempts a player regains per second across questions (0 for no bucket)
+     * @param burst     attempts a player may make at once before the rate applies
+     */
+    AnswerThrottle(int attemptsPerQuestion, double perSecond, int burst) {
+        this.attemptsPerQuestion = Math.max(0, attemptsPerQuestion);
+        this.intervalNanos = perSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / perSecond) : 0;
+        this.burstNanos = intervalNanos * Math.max(0, burst - 1);
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new Stripe();
+    }
+
+    boolean isOff() {
+        return attemptsPerQuestion == 0 && intervalNanos == 0;
+    }
+
+    /** A new question is up; every player's per-question count starts over. */
+    void nextRound() {
+        round++;
+    }
+
+    /** Takes one attempt for the player; false if they are out of attempts for now. */
+    boolean acquire(UUID player) {
+        if (isOff()) return true;
+        long hi = player.getMostSignificantBits();
+        long lo = player.getLeastSignificantBits();
+        long h = hash(hi, lo);
+        return stripe(h).acquire(hi, lo, h, round);
+    }
+
+    /** Gives back an attempt that turned out not to be an answer (chat that names no choice). */
+    void refund(UUID player) {
+        if (isOff()) return;
+        long hi = player.getMostSignificantBits();
+        long lo = player.getLeastSignificantBits();
+        long h = hash(hi, lo);
+        stripe(h).refund(hi, lo, h, round);
+    }
+
+    /** Drops a player who left. */
+    void forget(UUID player) {
+        long hi = player.getMostSignificantBits();
+        long lo = player.getLeastSignificantBits();
+        long h = hash(hi, lo);
+        stripe(h).forget(hi, lo, h);
+    }
+
+    int size() {
+        int n = 0;
+        for (Stripe s : stripes) n += s.size();
+        return n;
+    }
+
+    private static long hash(long hi, long lo) {
+        return (hi ^ lo) * 0x9E3779B97F4A7C15L;
+    }
+
+    private Stripe stripe(long h) {
+        return stripes[(int) (h >>> 60) & (STRIPES - 1)];
+    }
+
+    /* ------------------ Table ------------------ */
+
+    /** One stripe's players; its slots come from the hash's bits 32 and up, clear of the stripe bits. */
+    private final class Stripe {
+        // Guarded by this
+        private boolean[] used = new boolean[INITIAL_CAPACITY];
+        private long[] msb = new long[INITIAL_CAPACITY];
+        private long[] lsb = new long[INITIAL_CAPACITY];
+        private int[] rounds = new int[INITIAL_CAPACITY];
+        private int[] attempts = new int[INITIAL_CAPACITY];
+        private long[] tat = new long[INITIAL_CAPACITY]; // GCRA theoretical arrival time, as in TokenBucket
+        private int size;
+
+        synchronized boolean acquire(long hi, long lo, long h, int r) {
+            int i = slot(hi, lo, h, true, r);
+            if (rounds[i] != r) {
+                rounds[i] = r;
+                attempts[i] = 0;
+            }
+            if (attemptsPerQuestion > 0 && attempts[i] >= attemptsPerQuestion) return false;
+            if (intervalNanos > 0) {
+                long now = System.nanoTime();
+                long t = Math.max(tat[i] == 0 ? now : tat[i], now);
+                if (t - now > burstNanos) return false;
+                tat[i] = t + intervalNanos;
+            }
+            attempts[i]++;
+            return true;
+        }
+
+        synchronized void refund(long hi, long lo, long h, int r) {
+            int i = slot(hi, lo, h, false, r);
+            if (i < 0) return;
+            if (rounds[i] == r && attempts[i] > 0) attempts[i]--;
+            if (intervalNanos > 0) tat[i] -= intervalNanos;
+        }
+
+        synchronized void forget(long hi, long lo, long h) {
+            int i = slot(hi, lo, h, false, 0);
+            if (i < 0) return;
+            int mask = msb.length - 1;
+            // backward-shift deletion keeps every probe chain intact without tombstones
+            int hole = i;
+            for (int j = (i + 1) & mask; used[j]; j = (j + 1) & mask) {
+                int home = home(hash(msb[j], lsb[j]), mask);
+                if (((j - home) & mask) >= ((j - hole) & mask)) {
+                    move(j, hole);
+                    hole = j;
+                }
+            }
+            used[hole] = false;
+            size--;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        /** The player's slot, inserting them if {@code create}; -1 if absent and not created. */
+        private int slot(long hi, long lo, long h, boolean create, int r) {
+            int mask = msb.length - 1;
+            int i = home(h, mask);
+            while (used[i]) {
+                if (msb[i] == hi && lsb[i] == lo) return i;
+                i = (i + 1) & mask;
+            }
+            if (!create) return -1;
+            if ((size + 1) * 4 > msb.length * 3) {
+                grow();
+                return slot(hi, lo, h, true, r);
+            }
+            used[i] = true;
+            msb[i] = hi;
+            lsb[i] = lo;
+            rounds[i] = r - 1; // reads as a fresh count
+            attempts[i] = 0;
+            tat[i] = 0;
+            size++;
+            return i;
+        }
+
+        private void move(int from, int to) {
+            used[to] = true;
+            msb[to] = msb[from];
+            lsb[to] = lsb[from];
+            rounds[to] = rounds[from];
+            attempts[to] = attempts[from];
+            tat[to] = tat[from];
+        }
+
+        private void grow() {
+            boolean[] oldUsed = used;
+            long[] oldMsb = msb, oldLsb = lsb, oldTat = tat;
+            int[] oldRounds = rounds, oldAttempts = attempts;
+            int capacity = oldMsb.length * 2;
+            used = new boolean[capacity];
+            msb = new long[capacity];
+            lsb = new long[capacity];
+            rounds = new int[capacity];
+            attempts = new int[capacity];
+            tat = new long[capacity];
+            int mask = capacity - 1;
+            for (int j = 0; j < oldMsb.length; j++) {
+                if (!oldUsed[j]) continue;
+                int i = home(hash(oldMsb[j], oldLsb[j]), mask);
+                while (used[i]) i = (i + 1) & mask;
+                used[i] = true;
+                msb[i] = oldMsb[j];
+                lsb[i] = oldLsb[j];
+                rounds[i] = oldRounds[j];
+                attempts[i] = oldAttempts[j];
+                tat[i] = oldTat[j];
+            }
+        }
+    }
+
+    private static int home(long h, int mask) {
+        return (int) (h >>> 32) & mask;
+    }
+}
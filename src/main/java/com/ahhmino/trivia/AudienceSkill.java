@@ -0,0 +1,55 @@
+package com.ahhmino.trivia;
+
+import java.util.Locale;
+
+/**
+ * A session's audience skill, as an Elo-style logit rating: the audience is expected to solve a
+ * question of difficulty {@code d} with probability {@code 1 / (1 + e^(d - skill))}. A question's
+ * difficulty comes from its solve rate across every audience that has seen it, pulled towards
+ * the target rate until it has been asked a few times, so an unknown question counts as a fair
+ * fit. After each round the rating moves towards the outcome, and so follows whoever is online.
+ *
+ * <p>Selection prefers the candidate whose predicted solve rate is nearest the target: hard enough
+ * to be worth answering, easy enough that somebody usually does. Driver thread only.
+ */
+final class AudienceSkill {
+
+    private static final double PRIOR_ROUNDS = 3;   // weight of the target rate in a question's difficulty
+    private static final double STEP = 0.15;        // how far one round moves the rating
+    private static final double MAX_LOGIT = 4;      // about 2% / 98%
+
+    private final double target;
+    private double skill; // 0 = as good as the average audience so far
+
+    AudienceSkill(double targetSolveRate) {
+        this.target = Math.min(0.95, Math.max(0.05, targetSolveRate));
+    }
+
+    /** How far the question's predicted solve rate is from the target; lower is a better fit. */
+    double misfit(QuestionStats.Summary s) {
+        return Math.abs(predict(s) - target);
+    }
+
+    /** Updates the rating after a round with this question (stats as they were when it was asked). */
+    void observe(QuestionStats.Summary s, boolean solved) {
+        skill += STEP * ((solved ? 1 : 0) - predict(s));
+        skill = clamp(skill);
+    }
+
+    private double predict(QuestionStats.Summary s) {
+        return 1 / (1 + Math.exp(difficulty(s) - skill));
+    }
+
+    private double difficulty(QuestionStats.Summary s) {
+        double rate = (s.solved() + target * PRIOR_ROUNDS) / (s.asked() + PRIOR_ROUNDS);
+        return clamp(-Math.log(rate / (1 - rate)));
+    }
+
+    private static double clamp(double logit) {
+        return Math.max(-MAX_LOGIT, Math.min(MAX_LOGIT, logit));
+    }
+
+    String describe() {
+        return String.format(Locale.ROOT, "skill %+.2f, target %.0f%%", skill, target * 100);
+    }
+}
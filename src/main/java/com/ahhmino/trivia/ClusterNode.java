@@ -0,0 +1,287 @@
+package com.ahhmino.trivia;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * This server's membership in a trivia cluster: several backends behind a proxy that show the
+ * same questions at the same time, with one of them (the leader) fetching and asking.
+ *
+ * <p>Every node says hello once a second; a node heard from in the last few seconds is live, and
+ * the live node with the lowest id leads. The leader's sessions run as usual and publish each
+ * question, reveal and winner. Followers' sessions don't fetch or ask: they show the leader's
+ * questions, reveal when it does (or on their own deadline, plus some grace, if it goes quiet),
+ * and forward each round's first correct answer to the leader, which picks the winner by arrival
+ * and publishes it. A win is recorded in the leaderboard of the server the player is on. If the
+ * leader disappears the next node takes over on its next heartbeat, carrying on from the round
+ * numbers it has seen. Questions, reveals and winners from any node but the current leader are
+ * ignored, as are claims reaching a node that doesn't lead.
+ *
+ * <p>Messages are decoded on the transport's threads and handed to {@link Rounds} on the driver's
+ * thread. Sessions are matched by name, so every node should configure the same sessions. Node ids must be unique:
+ * each hello carries a random instance number, so a hello with this node's id but another
+ * instance is a second server configured with the same id, and is reported.
+ */
+final class ClusterNode {
+
+    /** The leader's rounds as they reach this node, for the session of the same name. Driver thread only. */
+    interface Rounds {
+        void show(String session, long round, TriviaQuestion q, long answerTicks);
+
+        void reveal(String session, long round);
+
+        /** Leader only: a follower's player answered correctly. */
+        void claim(String session, long round, ActiveQuestion.Win claim);
+
+        void winner(String session, long round, ActiveQuestion.Win win);
+    }
+
+    private static final byte HELLO = 0, QUESTION = 1, REVEAL = 2, CLAIM = 3, WINNER = 4;
+    private static final int HEARTBEAT_TICKS = 20;
+    private static final long PEER_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final long STARTUP_GRACE_MILLIS = 3_000; // hear from peers before leading
+    private static final long CONFLICT_WARN_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final Logger logger;
+    private final Executor driver;
+    private final String id;
+    private final ClusterTransport transport;
+    private final Rounds rounds;
+    private final long startupGraceNanos;
+    private final Map<String, Long> lastSeen = new ConcurrentHashMap<>(); // peer id -> nanoTime
+    private final long startedNanos = System.nanoTime();
+    private final long instance = ThreadLocalRandom.current().nextLong(); // tells our own hello from a namesake's
+    private volatile long conflictWarnedAt = System.nanoTime() - CONFLICT_WARN_NANOS;
+    private volatile String leader; // null until one is known
+
+    /** @param driver runs tasks on the driver's thread */
+    ClusterNode(Logger logger, Executor driver, String id, ClusterTransport transport, Rounds rounds) {
+        this(logger, driver, id, transport, rounds, STARTUP_GRACE_MILLIS);
+    }
+
+    /** With the startup grace given, so tests can elect a leader without waiting it out. */
+    ClusterNode(Logger logger, Executor driver, String id, ClusterTransport transport, Rounds rounds, long startupGraceMillis) {
+        this.logger = logger;
+        this.driver = driver;
+        this.id = id;
+        this.transport = transport;
+        this.rounds = rounds;
+        this.startupGraceNanos = TimeUnit.MILLISECONDS.toNanos(startupGraceMillis);
+    }
+
+    void start() throws IOException {
+        transport.start(this::receive);
+    }
+
+    void close() {
+        transport.close();
+    }
+
+    String id() {
+        return id;
+    }
+
+    boolean isLeader() {
+        return id.equals(leader);
+    }
+
+    String describe() {
+        String l = leader;
+        List<String> peers = new ArrayList<>(lastSeen.keySet());
+        peers.sort(null);
+        return "node " + id + " | leader=" + (l == null ? "electing" : l.equals(id) ? "this node" : l)
+                + " | live peers=" + peers + " | " + transport.describe();
+    }
+
+    /* ------------------ Membership (driver thread) ------------------ */
+
+    /** Called every tick: sends the heartbeat and re-elects once a second. */
+    void tick(long now) {
+        if (now % HEARTBEAT_TICKS != 0) return;
+        Out hello = message(HELLO);
+        try {
+            hello.data.writeLong(instance);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // in-memory stream
+        }
+        send(hello);
+
+        long t = System.nanoTime();
+        lastSeen.values().removeIf(seen -> t - seen > PEER_TIMEOUT_NANOS);
+        String best = id;
+        for (String peer : lastSeen.keySet()) {
+            if (peer.compareTo(best) < 0) best = peer;
+        }
+        if (best.equals(id) && t - startedNanos < startupGraceNanos) best = null;
+
+        String previous = leader;
+        if (best != null && !best.equals(previous)) {
+            logger.info(best.equals(id) ? "This server now leads the trivia cluster."
+                    : "Following trivia cluster leader " + best + ".");
+        }
+        leader = best;
+    }
+
+    /* ------------------ Publishing ------------------ */
+
+    /** @param choices {@code q.choices()}, already decoded for the round */
+    void publishQuestion(String session, long round, TriviaQuestion q, List<String> choices, long answerTicks) {
+        try {
+            Out out = message(QUESTION);
+            out.data.writeUTF(session);
+            out.data.writeLong(round);
+            out.data.writeLong(q.fingerprint());
+            out.data.writeUTF(q.question());
+            out.data.writeByte(choices.size());
+            for (String c : choices) out.data.writeUTF(c);
+            out.data.writeByte(q.correctIndex());
+            out.data.writeLong(answerTicks);
+            send(out);
+        } catch (IOException e) {
+            logger.warning("Could not publish question to the trivia cluster: " + e.getMessage());
+        }
+    }
+
+    void publishReveal(String session, long round) {
+        try {
+            Out out = message(REVEAL);
+            out.data.writeUTF(session);
+            out.data.writeLong(round);
+            send(out);
+        } catch (IOException e) {
+            logger.warning("Could not publish reveal to the trivia cluster: " + e.getMessage());
+        }
+    }
+
+    /** Announces the round's winner; {@code win.origin()} is null for a player on this server. */
+    void publishWinner(String session, long round, ActiveQuestion.Win win) {
+        sendWin(WINNER, session, round, win.player(), win.name(), win.millis(), win.origin() != null ? win.origin() : id);
+    }
+
+    /** Forwards a correct answer to the leader; safe from the async chat threads. */
+    void claim(String session, long round, UUID player, String name, long millis) {
+        sendWin(CLAIM, session, round, player, name, millis, id);
+    }
+
+    private void sendWin(byte type, String session, long round, UUID player, String name, long millis, String origin) {
+        try {
+            Out out = message(type);
+            out.data.writeUTF(session);
+            out.data.writeLong(round);
+            out.data.writeLong(player.getMostSignificantBits());
+            out.data.writeLong(player.getLeastSignificantBits());
+            out.data.writeUTF(name);
+            out.data.writeLong(millis);
+            out.data.writeUTF(origin);
+            send(out);
+        } catch (IOException e) {
+            logger.warning("Could not send a win to the trivia cluster: " + e.getMessage());
+        }
+    }
+
+    /* ------------------ Receiving (transport threads) ------------------ */
+
+    private void receive(SocketAddress from, byte[] message) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(message));
+            byte type = in.readByte();
+            String sender = in.readUTF();
+            if (sender.equals(id)) {
+                if (type == HELLO && in.readLong() != instance) conflict(from);
+                return;
+            }
+            lastSeen.put(sender, System.nanoTime());
+            switch (type) {
+                case HELLO -> { }
+                case QUESTION -> {
+                    String session = in.readUTF();
+                    long round = in.readLong();
+                    long fingerprint = in.readLong();
+                    String question = in.readUTF();
+                    int n = in.readUnsignedByte();
+                    List<String> choices = new ArrayList<>(n);
+                    for (int i = 0; i < n; i++) choices.add(in.readUTF());
+                    int correct = in.readUnsignedByte();
+                    long answerTicks = in.readLong();
+                    TriviaQuestion q = new TriviaQuestion(question, choices, correct, fingerprint);
+                    driver.execute(() -> {
+                        if (sender.equals(leader)) rounds.show(session, round, q, answerTicks);
+                    });
+                }
+                case REVEAL -> {
+                    String session = in.readUTF();
+                    long round = in.readLong();
+                    driver.execute(() -> {
+                        if (sender.equals(leader)) rounds.reveal(session, round);
+                    });
+                }
+                case CLAIM, WINNER -> {
+                    String session = in.readUTF();
+                    long round = in.readLong();
+                    UUID player = new UUID(in.readLong(), in.readLong());
+                    String name = in.readUTF();
+                    long millis = in.readLong();
+                    String origin = in.readUTF();
+                    ActiveQuestion.Win win = new ActiveQuestion.Win(player, name, millis, origin.equals(id) ? null : origin);
+                    // Only the leader judges claims, and only its verdicts count
+                    if (type == CLAIM) {
+                        driver.execute(() -> {
+                            if (isLeader()) rounds.claim(session, round, win);
+                        });
+                    } else {
+                        driver.execute(() -> {
+                            if (sender.equals(leader)) rounds.winner(session, round, win);
+                        });
+                    }
+                }
+                default -> logger.fine("Ignoring cluster message type " + type + " from " + sender + ".");
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            logger.warning("Malformed trivia cluster message: " + e.getMessage());
+        }
+    }
+
+    /** Another server says hello with our id; it and this one would both think they lead. */
+    private void conflict(SocketAddress from) {
+        long t = System.nanoTime();
+        if (t - conflictWarnedAt < CONFLICT_WARN_NANOS) return;
+        conflictWarnedAt = t;
+        logger.warning("Trivia cluster node at " + from + " is also using node id \"" + id
+                + "\"; give every server its own cluster.node_id or the cluster will have two leaders.");
+    }
+
+    /* ------------------ Encoding ------------------ */
+
+    /** A message being written: type and sender first, then the type's fields. */
+    private record Out(ByteArrayOutputStream bytes, DataOutputStream data) {
+    }
+
+    private Out message(byte type) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream data = new DataOutputStream(bytes);
+        try {
+            data.writeByte(type);
+            data.writeUTF(id);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // in-memory stream
+        }
+        return new Out(bytes, data);
+    }
+
+    private void send(Out out) {
+        transport.broadcast(out.bytes.toByteArray());
+    }
+}
@@ -0,0 +1,27 @@
+package com.ahhmino.trivia;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.function.BiConsumer;
+
+/**
+ * Carries {@link ClusterNode} messages between the trivia plugins on a network. A transport
+ * delivers each broadcast to every other node at most once and in order per sender, and may drop
+ * messages while a peer is unreachable; the cluster protocol treats a lost message like a late one.
+ */
+interface ClusterTransport {
+
+    /**
+     * Starts delivering other nodes' messages to {@code receiver}, with the address each arrived
+     * from, on the transport's own threads.
+     */
+    void start(BiConsumer<SocketAddress, byte[]> receiver) throws IOException;
+
+    /** Queues a message for every reachable node; never blocks. Safe from any thread. */
+    void broadcast(byte[] message);
+
+    /** One line of connection state for {@code /trivia status}. */
+    String describe();
+
+    void close();
+}
@@ -0,0 +1,44 @@
+package com.ahhmino.trivia;
+
+/**
+ * The OpenTriviaDB parameters a session fetches with. Blank strings mean "any".
+ */
+record FetchQuery(String category, String difficulty, String type, int amount, String encode) {
+
+    /**
+     * @param amount the amount to ask for, which the fetcher may have lowered from {@link #amount()}
+     * @param token  the session token, or null to fetch without one
+     */
+    String url(String baseUrl, int amount, String token) {
+        StringBuilder url = new StringBuilder(baseUrl)
+                .append("?amount=").append(amount);
+
+        if (category != null && !category.isBlank()) {
+            url.append("&category=").append(category);
+        }
+        if (difficulty != null && !difficulty.isBlank()) {
+            url.append("&difficulty=").append(difficulty);
+        }
+        if (type != null && !type.isBlank()) {
+            url.append("&type=").append(type);
+        }
+        if (encode != null && !encode.isBlank()) {
+            url.append("&encode=").append(encode);
+        }
+        if (token != null) {
+            url.append("&token=").append(token);
+        }
+        return url.toString();
+    }
+
+    int categoryCode() {
+        return QuestionStore.categoryCode(category);
+    }
+
+    /** The stored questions this query would also have accepted. */
+    QuestionStore.Filter storeFilter() {
+        return new QuestionStore.Filter(categoryCode(),
+                QuestionStore.difficultyCode(difficulty),
+                QuestionStore.typeCode(type));
+    }
+}
@@ -0,0 +1,370 @@
+package com.ahhmino.trivia;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers which questions were asked recently, by 64-bit fingerprint, so the same question isn't
+ * asked again within a window of N questions and/or N days.
+ *
+ * <p>Windows up to {@code exactLimit} questions are kept exactly: a ring of fingerprints in ask
+ * order backed by a {@link LongHashSet}, roughly 30-45 bytes per question. Larger (or purely time-based)
+ * windows use a segmented Bloom filter instead: {@value #SEGMENTS} bit sets that take turns being
+ * written, the oldest one cleared whenever the active one fills up or ages out. That costs about
+ * 2 MB per million questions, at the price of roughly a 1% chance to skip a question that wasn't
+ * actually asked.
+ *
+ * <p>The index is saved to {@code recent.dat} on close and bulk-loaded on open. Methods are
+ * synchronized; they're called from the driver thread and the fetch threads, never in a hot loop.
+ */
+final class FingerprintIndex {
+
+    private static final int MAGIC = 0x54465031; // "TFP1"
+    private static final byte MODE_EXACT = 1;
+    private static final byte MODE_BLOOM = 2;
+
+    private static final int SEGMENTS = 4;
+    private static final int BITS_PER_ENTRY = 12;
+    private static final int HASHES = 8;
+    private static final int DAYS_ONLY_CAPACITY = 1_000_000; // Bloom sizing when only a day limit is set
+
+    private final File file;
+    private final int windowQuestions;  // 0 = no count limit
+    private final long windowMinutes;   // 0 = no time limit
+    private final Window window;
+
+    private FingerprintIndex(File file, int windowQuestions, int windowDays, int exactLimit) {
+        this.file = file;
+        this.windowQuestions = Math.max(0, windowQuestions);
+        this.windowMinutes = TimeUnit.DAYS.toMinutes(Math.max(0, windowDays));
+        if (this.windowQuestions > 0 && this.windowQuestions <= exactLimit) {
+            window = new Exact(this.windowQuestions);
+        } else {
+            window = new Bloom(this.windowQuestions > 0 ? this.windowQuestions : DAYS_ONLY_CAPACITY,
+                    windowMinutes / (SEGMENTS - 1));
+        }
+    }
+
+    /**
+     * Opens the index in {@code folder}, loading {@code recent.dat} if it was written with the same
+     * kind of window. Returns null if both limits are 0 (suppression disabled).
+     */
+    static FingerprintIndex open(File folder, int windowQuestions, int windowDays, int exactLimit) throws IOException {
+        if (windowQuestions <= 0 && windowDays <= 0) return null;
+        FingerprintIndex index = new FingerprintIndex(new File(folder, "recent.dat"), windowQuestions, windowDays, exactLimit);
+        index.load();
+        return index;
+    }
+
+    /* ------------------ Fingerprints ------------------ */
+
+    /**
+     * 64-bit fingerprint of a question's text: FNV-1a over the lower-cased letters and digits only,
+     * so spacing, punctuation and case differences between sources don't count, then a final mix
+     * so every bit is usable for hashing. Never 0.
+     */
+    static long of(String text) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!Character.isLetterOrDigit(c)) continue;
+            h ^= Character.toLowerCase(c);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+
+    /* ------------------ Queries ------------------ */
+
+    /** Whether a question with this fingerprint was asked inside the window. */
+    synchronized boolean contains(long fingerprint) {
+        window.expire(now());
+        return window.contains(fingerprint);
+    }
+
+    /** Records that a question was just asked. */
+    synchronized void record(long fingerprint) {
+        long now = now();
+        window.expire(now);
+        window.add(fingerprint, now);
+    }
+
+    synchronized int size() {
+        return window.size();
+    }
+
+    String describe() {
+        return window instanceof Exact ? "exact" : "bloom";
+    }
+
+    private static long now() {
+        return TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis());
+    }
+
+    /* ------------------ Persistence ------------------ */
+
+    private void load() throws IOException {
+        if (!file.isFile()) return;
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (ch.size() < 8) return;
+            MappedByteBuffer in = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (in.getInt() != MAGIC) return;
+            byte mode = in.get();
+            if (mode == window.mode()) window.read(in);
+        } catch (RuntimeException e) {
+            // truncated or from an incompatible window; start over rather than refuse to load
+            window.clear();
+        }
+        window.expire(now());
+    }
+
+    /** Writes the index to a temporary file and moves it over {@code recent.dat}. */
+    synchronized void save() throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        ByteBuffer out = ByteBuffer.allocate(5 + window.byteSize());
+        out.putInt(MAGIC).put(window.mode());
+        window.write(out);
+        out.flip();
+        try (FileChannel ch = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (out.hasRemaining()) ch.write(out);
+            ch.force(false);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /* ------------------ Windows ------------------ */
+
+    private interface Window {
+        byte mode();
+
+        boolean contains(long fp);
+
+        void add(long fp, long minute);
+
+        void expire(long minute);
+
+        int size();
+
+        void clear();
+
+        int byteSize();
+
+        void write(ByteBuffer out);
+
+        void read(ByteBuffer in);
+    }
+
+    /** Ring of (fingerprint, minute) in ask order plus a set for lookups. */
+    private final class Exact implements Window {
+        private final long[] fps;
+        private final int[] minutes;
+        private final LongHashSet set;
+        private int head; // oldest entry
+        private int size;
+
+        Exact(int capacity) {
+            fps = new long[capacity];
+            minutes = new int[capacity];
+            set = new LongHashSet(capacity);
+        }
+
+        @Override
+        public byte mode() {
+            return MODE_EXACT;
+        }
+
+        @Override
+        public boolean contains(long fp) {
+            return set.contains(fp);
+        }
+
+        @Override
+        public void add(long fp, long minute) {
+            if (set.contains(fp)) return; // already inside the window; the first ask keeps counting
+            if (size == fps.length) removeOldest();
+            int tail = (head + size) % fps.length;
+            fps[tail] = fp;
+            minutes[tail] = (int) minute;
+            set.add(fp);
+            size++;
+        }
+
+        @Override
+        public void expire(long minute) {
+            if (windowMinutes == 0) return;
+            while (size > 0 && minute - minutes[head] >= windowMinutes) removeOldest();
+        }
+
+        private void removeOldest() {
+            set.remove(fps[head]);
+            head = (head + 1) % fps.length;
+            size--;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void clear() {
+            set.clear();
+            head = 0;
+            size = 0;
+        }
+
+        @Override
+        public int byteSize() {
+            return 4 + size * 12;
+        }
+
+        @Override
+        public void write(ByteBuffer out) {
+            out.putInt(size);
+            for (int i = 0; i < size; i++) {
+                int at = (head + i) % fps.length;
+                out.putLong(fps[at]).putInt(minutes[at]);
+            }
+        }
+
+        @Override
+        public void read(ByteBuffer in) {
+            int n = in.getInt();
+            // keep the newest entries if the window shrank since the file was written
+            for (int i = 0; i < n; i++) {
+                long fp = in.getLong();
+                int minute = in.getInt();
+                if (fp != 0) add(fp, minute);
+            }
+        }
+    }
+
+    /** Rotating Bloom filter segments; the window is roughly the last SEGMENTS - 1 of them. */
+    private static final class Bloom implements Window {
+        private final int segmentCapacity;
+        private final long segmentMinutes; // 0 = rotate on count only
+        private final int bits;
+        private final long[][] segments;
+        private final int[] counts = new int[SEGMENTS];
+        private final long[] started = new long[SEGMENTS];
+        private int active;
+
+        Bloom(int capacity, long segmentMinutes) {
+            this.segmentCapacity = Math.max(1, (capacity + SEGMENTS - 2) / (SEGMENTS - 1));
+            this.segmentMinutes = segmentMinutes;
+            this.bits = Math.max(64, segmentCapacity * BITS_PER_ENTRY);
+            this.segments = new long[SEGMENTS][(bits + 63) >>> 6];
+            long now = now();
+            for (int i = 0; i < SEGMENTS; i++) started[i] = now;
+        }
+
+        @Override
+        public byte mode() {
+            return MODE_BLOOM;
+        }
+
+        @Override
+        public boolean contains(long fp) {
+            for (int s = 0; s < SEGMENTS; s++) {
+                if (counts[s] > 0 && test(segments[s], fp)) return true;
+            }
+            return false;
+        }
+
+        private boolean test(long[] seg, long fp) {
+            // double hashing: probe i is h1 + i*h2, taken modulo the segment's bit count
+            int h1 = (int) fp;
+            int h2 = (int) (fp >>> 32) | 1;
+            for (int i = 0; i < HASHES; i++) {
+                int bit = Math.floorMod(h1 + i * h2, bits);
+                if ((seg[bit >>> 6] & (1L << bit)) == 0) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void add(long fp, long minute) {
+            if (counts[active] >= segmentCapacity) rotate(minute);
+            long[] seg = segments[active];
+            int h1 = (int) fp;
+            int h2 = (int) (fp >>> 32) | 1;
+            for (int i = 0; i < HASHES; i++) {
+                int bit = Math.floorMod(h1 + i * h2, bits);
+                seg[bit >>> 6] |= 1L << bit;
+            }
+            counts[active]++;
+        }
+
+        @Override
+        public void expire(long minute) {
+            if (segmentMinutes == 0) return;
+            // at most one rotation per segment; a long gap empties everything
+            for (int i = 0; i < SEGMENTS && minute - started[active] >= segmentMinutes; i++) rotate(minute);
+        }
+
+        private void rotate(long minute) {
+            active = (active + 1) % SEGMENTS;
+            Arrays.fill(segments[active], 0);
+            counts[active] = 0;
+            started[active] = minute;
+        }
+
+        @Override
+        public int size() {
+            int n = 0;
+            for (int c : counts) n += c;
+            return n;
+        }
+
+        @Override
+        public void clear() {
+            for (int s = 0; s < SEGMENTS; s++) {
+                Arrays.fill(segments[s], 0);
+                counts[s] = 0;
+            }
+        }
+
+        @Override
+        public int byteSize() {
+            return 8 + SEGMENTS * (12 + segments[0].length * 8);
+        }
+
+        @Override
+        public void write(ByteBuffer out) {
+            out.putInt(bits).putInt(active);
+            for (int s = 0; s < SEGMENTS; s++) {
+                out.putInt(counts[s]).putLong(started[s]);
+                out.asLongBuffer().put(segments[s]);
+                out.position(out.position() + segments[s].length * 8);
+            }
+        }
+
+        @Override
+        public void read(ByteBuffer in) {
+            if (in.getInt() != bits) return; // sized for a different window; start empty
+            int a = in.getInt();
+            if (a < 0 || a >= SEGMENTS) return;
+            for (int s = 0; s < SEGMENTS; s++) {
+                counts[s] = in.getInt();
+                started[s] = in.getLong();
+                in.asLongBuffer().get(segments[s]);
+                in.position(in.position() + segments[s].length * 8);
+            }
+            active = a;
+        }
+    }
+}
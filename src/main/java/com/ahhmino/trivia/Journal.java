@@ -0,0 +1,382 @@
+package com.ahhmino.trivia;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * Append-only history of every round: each question asked, each answer attempt with its time,
+ * and each reveal, for settling disputes after the fact. Read offline with {@link JournalReader}.
+ *
+ * <p>Callers hand over an {@link Entry} through a lock-free queue and return; one background
+ * thread encodes entries into memory-mapped segment files under {@code journal/}. A segment is
+ * preallocated at a fixed size and a new one is started when the next record wouldn't fit; the
+ * oldest are deleted beyond {@code maxSegments}. Segments are flushed to disk every few seconds
+ * and trimmed to their used length when finished. If the writer falls far behind, new entries are
+ * dropped and counted rather than queued without bound.
+ *
+ * <p>Segment layout: a 16-byte header ({@code MAGIC}, version, creation time), then records, then
+ * zeros. Every record starts with the same 24 bytes: total size, type, flag, session id, wall-clock
+ * millis and round number; the rest depends on the type, with strings as a 16-bit length and UTF-8.
+ * Session names are written once per segment as their own record and referred to by id after that.
+ * This class uses nothing from the server API, so the reader can run without one.
+ */
+final class Journal {
+
+    static final int MAGIC = 0x544A4E31; // "TJN1"
+    static final int VERSION = 1;
+    static final int SEGMENT_HEADER = 16;
+    static final int RECORD_HEADER = 24;
+    static final String SUFFIX = ".tjl";
+
+    static final byte SESSION = 0, ASKED = 1, ATTEMPT = 2, REVEALED = 3;
+
+    private static final int MAX_TEXT_CHARS = 512;   // longer chat or questions are cut
+    private static final int MAX_PENDING = 100_000;  // entries queued before new ones are dropped
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    /** One journal record. {@code time} is wall-clock millis. */
+    sealed interface Entry permits Asked, Attempt, Revealed {
+        long time();
+        String session();
+        long round();
+    }
+
+    /** A question went up; {@code choices} are in display order. */
+    record Asked(long time, String session, long round, long fingerprint, String question,
+                 List<String> choices, int correctIndex) implements Entry {
+    }
+
+    /** A player answered; {@code elapsedMillis} is from the question being shown. */
+    record Attempt(long time, String session, long round, UUID player, String name, String message,
+                   boolean correct, long elapsedMillis) implements Entry {
+    }
+
+    /** The answer was shown; {@code winner} is null if nobody got it. */
+    record Revealed(long time, String session, long round, UUID winner, String winnerName,
+                    long winnerMillis) implements Entry {
+    }
+
+    private final Logger log;
+    private final File folder;
+    private final int segmentBytes;
+    private final int maxSegments;
+    private final long flushNanos;
+    private final Queue<Entry> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    // Writer thread only
+    private final ByteBuffer scratch = ByteBuffer.allocate(64 * 1024);
+    private final Map<String, Integer> sessionIds = new HashMap<>();
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private long lastFlush;
+    private volatile long written; // records this run; read by describe()
+
+    private Journal(Logger log, File folder, int segmentBytes, int maxSegments, int flushSeconds) {
+        this.log = log;
+        this.folder = folder;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = Math.max(1, maxSegments);
+        this.flushNanos = TimeUnit.SECONDS.toNanos(Math.max(1, flushSeconds));
+        this.writer = new Thread(this::run, "Trivia-Journal");
+        this.writer.setDaemon(true);
+    }
+
+    static Journal open(File dataFolder, Logger log, int segmentMb, int maxSegments, int flushSeconds) throws IOException {
+        File folder = new File(dataFolder, "journal");
+        if (!folder.exists() && !folder.mkdirs()) {
+            throw new IOException("Could not create " + folder);
+        }
+        int bytes = (int) Math.min(Integer.MAX_VALUE, Math.max(1, segmentMb) * 1024L * 1024L);
+        Journal journal = new Journal(log, folder, bytes, maxSegments, flushSeconds);
+        journal.startSegment();
+        journal.writer.start();
+        return journal;
+    }
+
+    /* ------------------ Producers (any thread) ------------------ */
+
+    void add(Entry entry) {
+        if (!running) {
+            dropped.increment();
+            return;
+        }
+        if (pending.incrementAndGet() > MAX_PENDING) {
+            pending.decrementAndGet();
+            dropped.increment();
+            return;
+        }
+        queue.add(entry);
+    }
+
+    String describe() {
+        return written + " records this run, " + pending.get() + " queued, " + dropped.sum() + " dropped";
+    }
+
+    /* ------------------ Writer ------------------ */
+
+    private void run() {
+        while (running || !queue.isEmpty()) {
+            if (System.nanoTime() - lastFlush > flushNanos) flush();
+            Entry e = queue.poll();
+            if (e == null) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            pending.decrementAndGet();
+            try {
+                write(e);
+            } catch (IOException ex) {
+                log.warning("Journal write failed: " + ex.getMessage());
+            } catch (RuntimeException ex) {
+                log.warning("Could not journal " + e.getClass().getSimpleName() + ": " + ex);
+            }
+        }
+        finishSegment();
+    }
+
+    private void write(Entry e) throws IOException {
+        if (segment == null) startSegment(); // the last one failed to start
+        encode(e, sessionId(e.session()));
+        if (scratch.remaining() > segment.remaining()) {
+            startSegment();
+            encode(e, sessionId(e.session())); // the new segment needs its own session record first
+            if (scratch.remaining() > segment.remaining()) throw new IOException("record larger than a segment");
+        }
+        segment.put(scratch);
+        written++;
+    }
+
+    /** The session's id in the current segment, writing its record on first use. */
+    private int sessionId(String session) throws IOException {
+        Integer id = sessionIds.get(session);
+        if (id != null) return id;
+        int next = sessionIds.size();
+        scratch.clear();
+        header(SESSION, 0, next, System.currentTimeMillis(), 0);
+        putString(session);
+        finish();
+        if (scratch.remaining() > segment.remaining()) {
+            startSegment();
+            return sessionId(session);
+        }
+        segment.put(scratch);
+        sessionIds.put(session, next);
+        return next;
+    }
+
+    /** Encodes the entry into {@code scratch}, ready to be copied into the segment. */
+    private void encode(Entry e, int sessionId) {
+        scratch.clear();
+        switch (e) {
+            case Asked a -> {
+                header(ASKED, a.correctIndex(), sessionId, a.time(), a.round());
+                scratch.putLong(a.fingerprint());
+                scratch.put((byte) a.choices().size());
+                putString(a.question());
+                for (String c : a.choices()) putString(c);
+            }
+            case Attempt a -> {
+                header(ATTEMPT, a.correct() ? 1 : 0, sessionId, a.time(), a.round());
+                putUuid(a.player());
+                scratch.putInt((int) Math.min(Integer.MAX_VALUE, a.elapsedMillis()));
+                putString(a.name());
+                putString(a.message());
+            }
+            case Revealed r -> {
+                header(REVEALED, r.winner() != null ? 1 : 0, sessionId, r.time(), r.round());
+                putUuid(r.winner());
+                scratch.putInt(r.winner() != null ? (int) Math.min(Integer.MAX_VALUE, r.winnerMillis()) : -1);
+                putString(r.winnerName() != null ? r.winnerName() : "");
+            }
+        }
+        finish();
+    }
+
+    private void header(byte type, int flag, int sessionId, long time, long round) {
+        scratch.putInt(0).put(type).put((byte) flag).putShort((short) sessionId).putLong(time).putLong(round);
+    }
+
+    private void putUuid(UUID id) {
+        scratch.putLong(id != null ? id.getMostSignificantBits() : 0).putLong(id != null ? id.getLeastSignificantBits() : 0);
+    }
+
+    private void putString(String s) {
+        if (s.length() > MAX_TEXT_CHARS) s = s.substring(0, MAX_TEXT_CHARS);
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        scratch.putShort((short) bytes.length).put(bytes);
+    }
+
+    /** Fills in the record's size and flips {@code scratch} for copying. */
+    private void finish() {
+        scratch.putInt(0, scratch.position());
+        scratch.flip();
+    }
+
+    /* ------------------ Segments ------------------ */
+
+    private void startSegment() throws IOException {
+        finishSegment();
+        File[] existing = segments(folder);
+        int seq = existing.length == 0 ? 1 : sequence(existing[existing.length - 1]) + 1;
+        File file = new File(folder, String.format(Locale.ROOT, "segment-%06d%s", seq, SUFFIX));
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        segment.putInt(MAGIC).putInt(VERSION).putLong(System.currentTimeMillis());
+        sessionIds.clear();
+        lastFlush = System.nanoTime();
+
+        for (int i = 0; i <= existing.length - maxSegments; i++) {
+            if (!existing[i].delete()) log.warning("Could not delete old journal segment " + existing[i].getName());
+        }
+    }
+
+    private void flush() {
+        lastFlush = System.nanoTime();
+        if (segment != null) segment.force();
+    }
+
+    /** Flushes the current segment and trims the unused preallocated tail. */
+    private void finishSegment() {
+        if (segment == null) return;
+        int used = segment.position();
+        segment.force();
+        segment = null;
+        try {
+            channel.truncate(used);
+            channel.close();
+        } catch (IOException e) {
+            log.warning("Error closing journal segment: " + e.getMessage());
+        }
+        channel = null;
+    }
+
+    /** Writes out everything queued, waiting at most {@code timeoutMillis}. */
+    void close(long timeoutMillis) {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) log.warning("Timed out writing the journal; recent entries may be lost.");
+    }
+
+    /* ------------------ Reading ------------------ */
+
+    /** The segment files in a folder, oldest first. */
+    static File[] segments(File folder) {
+        File[] files = folder.listFiles((dir, name) -> name.startsWith("segment-") && name.endsWith(SUFFIX));
+        if (files == null) return new File[0];
+        Arrays.sort(files, Comparator.comparingInt(Journal::sequence));
+        return files;
+    }
+
+    private static int sequence(File segment) {
+        String name = segment.getName();
+        try {
+            return Integer.parseInt(name.substring("segment-".length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Reads every entry of a segment, in order, stopping quietly at the end of what was written
+     * (a crash can leave a partly written last record, which is skipped).
+     */
+    static List<Entry> read(File file) throws IOException {
+        List<Entry> out = new ArrayList<>();
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (ch.size() < SEGMENT_HEADER) return out;
+            ByteBuffer in = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (in.getInt() != MAGIC) throw new IOException(file.getName() + " is not a trivia journal segment");
+            int version = in.getInt();
+            if (version != VERSION) throw new IOException(file.getName() + " is journal version " + version);
+            in.getLong(); // created
+
+            Map<Integer, String> sessions = new HashMap<>();
+            while (in.remaining() >= RECORD_HEADER) {
+                int start = in.position();
+                int size = in.getInt(start);
+                if (size < RECORD_HEADER || size > in.remaining()) break;
+                Entry e;
+                try {
+                    e = decode(in.slice(start, size), sessions);
+                } catch (BufferUnderflowException ex) {
+                    break; // torn write
+                }
+                if (e != null) out.add(e);
+                in.position(start + size);
+            }
+        }
+        return out;
+    }
+
+    private static Entry decode(ByteBuffer in, Map<Integer, String> sessions) {
+        in.getInt(); // size
+        byte type = in.get();
+        int flag = in.get();
+        int sessionId = Short.toUnsignedInt(in.getShort());
+        long time = in.getLong();
+        long round = in.getLong();
+        String session = sessions.getOrDefault(sessionId, "#" + sessionId);
+        switch (type) {
+            case SESSION -> {
+                sessions.put(sessionId, getString(in));
+                return null;
+            }
+            case ASKED -> {
+                long fingerprint = in.getLong();
+                int n = Byte.toUnsignedInt(in.get());
+                String question = getString(in);
+                List<String> choices = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) choices.add(getString(in));
+                return new Asked(time, session, round, fingerprint, question, choices, flag);
+            }
+            case ATTEMPT -> {
+                UUID player = getUuid(in);
+                long elapsed = in.getInt();
+                String name = getString(in);
+                return new Attempt(time, session, round, player, name, getString(in), flag == 1, elapsed);
+            }
+            case REVEALED -> {
+                UUID winner = getUuid(in);
+                long millis = in.getInt();
+                String name = getString(in);
+                return flag == 1 ? new Revealed(time, session, round, winner, name, millis)
+                        : new Revealed(time, session, round, null, null, -1);
+            }
+            default -> {
+                return null; // written by a newer version
+            }
+        }
+    }
+
+    private static String getString(ByteBuffer in) {
+        byte[] bytes = new byte[Short.toUnsignedInt(in.getShort())];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static UUID getUuid(ByteBuffer in) {
+        return new UUID(in.getLong(), in.getLong());
+    }
+}
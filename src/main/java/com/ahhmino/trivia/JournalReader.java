@@ -0,0 +1,165 @@
+package com.ahhmino.trivia;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Offline reader for the round {@link Journal}; needs only the plugin jar, not a server:
+ *
+ * <pre>
+ *   java -cp TriviaPlugin.jar com.ahhmino.trivia.JournalReader replay|csv|json &lt;segment or folder&gt;...
+ * </pre>
+ *
+ * {@code replay} prints the rounds as a readable transcript, {@code csv} and {@code json} (one
+ * object per line) export every record. A folder means all of its segments, oldest first. Output
+ * goes to standard out.
+ */
+public final class JournalReader {
+
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS", Locale.ROOT)
+            .withZone(ZoneId.systemDefault());
+
+    private JournalReader() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: JournalReader replay|csv|json <segment or folder>...");
+            System.exit(2);
+        }
+        String mode = args[0].toLowerCase(Locale.ROOT);
+        if (!List.of("replay", "csv", "json").contains(mode)) {
+            System.err.println("Unknown mode " + args[0] + "; use replay, csv or json.");
+            System.exit(2);
+        }
+        List<File> files = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            File f = new File(args[i]);
+            if (f.isDirectory()) {
+                files.addAll(List.of(Journal.segments(f)));
+            } else {
+                files.add(f);
+            }
+        }
+
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+        if (mode.equals("csv")) out.println("time,session,round,type,fingerprint,player,name,correct,elapsed_ms,text");
+        for (File f : files) {
+            for (Journal.Entry e : Journal.read(f)) {
+                switch (mode) {
+                    case "replay" -> replay(out, e);
+                    case "csv" -> csv(out, e);
+                    default -> json(out, e);
+                }
+            }
+        }
+        out.flush();
+    }
+
+    /* ------------------ Replay ------------------ */
+
+    private static void replay(PrintWriter out, Journal.Entry entry) {
+        String prefix = TIME.format(Instant.ofEpochMilli(entry.time())) + " [" + entry.session() + " #" + entry.round() + "] ";
+        switch (entry) {
+            case Journal.Asked a -> {
+                out.println(prefix + "Q: " + a.question());
+                for (int i = 0; i < a.choices().size(); i++) {
+                    out.println(" ".repeat(prefix.length()) + (i == a.correctIndex() ? "* " : "  ")
+                            + (char) ('A' + i) + ") " + a.choices().get(i));
+                }
+            }
+            case Journal.Attempt a -> out.println(prefix + String.format(Locale.ROOT, "+%.3fs %s: %s%s",
+                    a.elapsedMillis() / 1000.0, a.name(), a.message(), a.correct() ? "  (correct)" : ""));
+            case Journal.Revealed r -> out.println(prefix + (r.winner() == null ? "Revealed, no winner"
+                    : String.format(Locale.ROOT, "Revealed, won by %s in %.3fs", r.winnerName(), r.winnerMillis() / 1000.0)));
+        }
+    }
+
+    /* ------------------ CSV ------------------ */
+
+    private static void csv(PrintWriter out, Journal.Entry entry) {
+        String common = TIME.format(Instant.ofEpochMilli(entry.time())) + "," + csvField(entry.session()) + "," + entry.round();
+        switch (entry) {
+            case Journal.Asked a -> {
+                StringBuilder text = new StringBuilder(a.question());
+                for (int i = 0; i < a.choices().size(); i++) {
+                    text.append(" | ").append(i == a.correctIndex() ? "*" : "").append(a.choices().get(i));
+                }
+                out.println(common + ",asked," + Long.toHexString(a.fingerprint()) + ",,,,," + csvField(text.toString()));
+            }
+            case Journal.Attempt a -> out.println(common + ",attempt,," + a.player() + "," + csvField(a.name()) + ","
+                    + a.correct() + "," + a.elapsedMillis() + "," + csvField(a.message()));
+            case Journal.Revealed r -> out.println(common + ",revealed,,"
+                    + (r.winner() == null ? ",,," : r.winner() + "," + csvField(r.winnerName()) + ",true," + r.winnerMillis()) + ",");
+        }
+    }
+
+    private static String csvField(String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) return s;
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+
+    /* ------------------ JSON ------------------ */
+
+    private static void json(PrintWriter out, Journal.Entry entry) {
+        StringBuilder sb = new StringBuilder("{\"time\":").append(entry.time())
+                .append(",\"session\":").append(jsonString(entry.session()))
+                .append(",\"round\":").append(entry.round());
+        switch (entry) {
+            case Journal.Asked a -> {
+                sb.append(",\"type\":\"asked\",\"fingerprint\":\"").append(Long.toHexString(a.fingerprint()))
+                        .append("\",\"question\":").append(jsonString(a.question())).append(",\"choices\":[");
+                for (int i = 0; i < a.choices().size(); i++) {
+                    if (i > 0) sb.append(',');
+                    sb.append(jsonString(a.choices().get(i)));
+                }
+                sb.append("],\"correct\":").append(a.correctIndex());
+            }
+            case Journal.Attempt a -> sb.append(",\"type\":\"attempt\",\"player\":\"").append(a.player())
+                    .append("\",\"name\":").append(jsonString(a.name()))
+                    .append(",\"message\":").append(jsonString(a.message()))
+                    .append(",\"correct\":").append(a.correct())
+                    .append(",\"elapsed_ms\":").append(a.elapsedMillis());
+            case Journal.Revealed r -> {
+                sb.append(",\"type\":\"revealed\"");
+                if (r.winner() != null) {
+                    sb.append(",\"winner\":\"").append(r.winner()).append("\",\"name\":").append(jsonString(r.winnerName()))
+                            .append(",\"elapsed_ms\":").append(r.winnerMillis());
+                }
+            }
+        }
+        out.println(sb.append('}'));
+    }
+
+    private static String jsonString(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -0,0 +1,298 @@
+package com.ahhmino.trivia;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Logger;
+
+/**
+ * Per-player trivia stats with write-behind persistence and an incrementally maintained top list.
+ *
+ * <p>Aggregates live in memory keyed by UUID. Each player owns a fixed-size slot in
+ * {@code stats.dat}; wins only mark the player dirty, and a background thread periodically writes
+ * every dirty slot in one batch. Wins happen at most once per round, so all mutation goes through
+ * one monitor without any meaningful contention.
+ *
+ * <p>Streaks are per session: a win or an unsolved round ends only the streak built in the same
+ * session, so concurrent sessions don't break each other's.
+ *
+ * <p>Correct-answer counts only ever grow, so the top list can be kept exact by re-seating the
+ * winner alone: a player outside the list can only enter it by overtaking its last entry.
+ */
+final class Leaderboard {
+
+    private static final int MAGIC = 0x54535431; // "TST1"
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_SIZE = 64;
+    private static final int NAME_BYTES = 16;
+
+    /** Immutable copy of one player's stats for display. */
+    record Standing(UUID uuid, String name, int correct, int streak, int bestStreak, long averageMillis, long fastestMillis) {}
+
+    private static final class PlayerStats {
+        final UUID uuid;
+        final int slot;
+        String name;
+        int correct;
+        int streak;
+        int bestStreak;
+        long totalMillis;
+        long fastestMillis = Long.MAX_VALUE;
+        boolean dirty;
+        boolean inTop;
+
+        PlayerStats(UUID uuid, int slot, String name) {
+            this.uuid = uuid;
+            this.slot = slot;
+            this.name = name;
+        }
+
+        Standing standing() {
+            return new Standing(uuid, name, correct, streak, bestStreak,
+                    correct == 0 ? 0 : totalMillis / correct,
+                    fastestMillis == Long.MAX_VALUE ? 0 : fastestMillis);
+        }
+    }
+
+    // most correct first; ties go to the faster best time, then a stable UUID order
+    private static final Comparator<PlayerStats> RANKING = Comparator
+            .comparingInt((PlayerStats p) -> -p.correct)
+            .thenComparingLong(p -> p.fastestMillis)
+            .thenComparing(p -> p.uuid);
+
+    private final Logger log;
+    private final FileChannel file;
+    private final int topSize;
+    private final Map<UUID, PlayerStats> players = new HashMap<>();
+    private final TreeSet<PlayerStats> top = new TreeSet<>(RANKING);
+    private final List<PlayerStats> dirty = new ArrayList<>();
+    private final ScheduledExecutorService flusher;
+    private final Map<String, PlayerStats> lastWinners = new HashMap<>(); // by session name
+    private volatile long version; // bumped on every change to a standing
+
+    private Leaderboard(Logger log, FileChannel file, int topSize) {
+        this.log = log;
+        this.file = file;
+        this.topSize = Math.max(1, topSize);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Trivia-Stats");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    static Leaderboard open(File folder, Logger log, int topSize, int flushSeconds) throws IOException {
+        if (!folder.exists() && !folder.mkdirs()) {
+            throw new IOException("Could not create " + folder);
+        }
+        FileChannel channel = FileChannel.open(new File(folder, "stats.dat").toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Leaderboard board = new Leaderboard(log, channel, topSize);
+        try {
+            board.load();
+        } catch (IOException e) {
+            board.flusher.shutdownNow();
+            channel.close();
+            throw e;
+        }
+        long period = Math.max(1, flushSeconds);
+        board.flusher.scheduleWithFixedDelay(board::flushQuietly, period, period, TimeUnit.SECONDS);
+        return board;
+    }
+
+    /* ------------------ Loading ------------------ */
+
+    private void load() throws IOException {
+        long size = file.size();
+        if (size < HEADER_SIZE) {
+            file.truncate(0);
+            file.write(ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(1).flip(), 0);
+            return;
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate((int) Math.min(size, Integer.MAX_VALUE));
+        while (buf.hasRemaining() && file.read(buf, buf.position()) > 0) { }
+        buf.flip();
+        if (buf.getInt(0) != MAGIC) throw new IOException("stats.dat is not a trivia stats file");
+
+        int slots = (buf.limit() - HEADER_SIZE) / RECORD_SIZE;
+        for (int slot = 0; slot < slots; slot++) {
+            int base = HEADER_SIZE + slot * RECORD_SIZE;
+            UUID uuid = new UUID(buf.getLong(base), buf.getLong(base + 8));
+            int nameLen = Byte.toUnsignedInt(buf.get(base + 40));
+            byte[] name = new byte[Math.min(nameLen, NAME_BYTES)];
+            buf.get(base + 41, name);
+
+            PlayerStats p = new PlayerStats(uuid, slot, new String(name, StandardCharsets.UTF_8));
+            p.correct = buf.getInt(base + 16);
+            p.streak = buf.getInt(base + 20);
+            p.bestStreak = buf.getInt(base + 24);
+            p.totalMillis = buf.getLong(base + 28);
+            int fastest = buf.getInt(base + 36);
+            p.fastestMillis = fastest < 0 ? Long.MAX_VALUE : fastest;
+            players.put(uuid, p);
+            seat(p);
+        }
+    }
+
+    /* ------------------ Updates ------------------ */
+
+    /** Records a round win in {@code session}. Called from the chat thread of the round's single winner. */
+    synchronized void recordWin(String session, UUID uuid, String name, long millis) {
+        PlayerStats p = players.get(uuid);
+        if (p == null) {
+            p = new PlayerStats(uuid, players.size(), name);
+            players.put(uuid, p);
+        }
+        PlayerStats last = lastWinners.put(session, p);
+        if (last != null && last != p) breakStreak(last);
+
+        if (p.inTop) top.remove(p); // ranking key is about to change
+        p.inTop = false;
+        p.name = name;
+        p.correct++;
+        p.streak++;
+        p.bestStreak = Math.max(p.bestStreak, p.streak);
+        p.totalMillis += millis;
+        p.fastestMillis = Math.min(p.fastestMillis, millis);
+        markDirty(p);
+        seat(p);
+        version++;
+    }
+
+    /** A round in {@code session} ended with nobody answering correctly, which ends that session's streak. */
+    synchronized void recordNoWinner(String session) {
+        PlayerStats last = lastWinners.remove(session);
+        if (last != null) breakStreak(last);
+        version++;
+    }
+
+    private void breakStreak(PlayerStats p) {
+        if (p.streak == 0) return;
+        p.streak = 0;
+        markDirty(p);
+    }
+
+    private void markDirty(PlayerStats p) {
+        if (!p.dirty) {
+            p.dirty = true;
+            dirty.add(p);
+        }
+    }
+
+    /** Places p in the top list if it belongs there, evicting whoever it pushes out. */
+    private void seat(PlayerStats p) {
+        if (top.size() < topSize) {
+            top.add(p);
+            p.inTop = true;
+        } else if (RANKING.compare(p, top.last()) < 0) {
+            top.pollLast().inTop = false;
+            top.add(p);
+            p.inTop = true;
+        }
+    }
+
+    /* ------------------ Queries ------------------ */
+
+    synchronized List<Standing> top(int n) {
+        List<Standing> out = new ArrayList<>(Math.min(n, top.size()));
+        for (PlayerStats p : top) {
+            if (out.size() >= n) break;
+            out.add(p.standing());
+        }
+        return out;
+    }
+
+    synchronized Standing get(UUID uuid) {
+        PlayerStats p = players.get(uuid);
+        return p == null ? null : p.standing();
+    }
+
+    int topSize() {
+        return topSize;
+    }
+
+    /** Changes whenever any standing does; safe from any thread without locking. */
+    long version() {
+        return version;
+    }
+
+    /* ------------------ Persistence ------------------ */
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            log.warning("Failed to save trivia stats: " + e.getMessage());
+        }
+    }
+
+    /** Writes every dirty slot. Runs on the flusher thread. */
+    private void flush() throws IOException {
+        ByteBuffer batch;
+        int[] slots;
+        synchronized (this) {
+            if (dirty.isEmpty()) return;
+            batch = ByteBuffer.allocate(dirty.size() * RECORD_SIZE);
+            slots = new int[dirty.size()];
+            for (int i = 0; i < dirty.size(); i++) {
+                PlayerStats p = dirty.get(i);
+                p.dirty = false;
+                slots[i] = p.slot;
+                encode(p, batch);
+            }
+            dirty.clear();
+        }
+
+        for (int i = 0; i < slots.length; i++) {
+            ByteBuffer record = batch.slice(i * RECORD_SIZE, RECORD_SIZE);
+            long pos = HEADER_SIZE + (long) slots[i] * RECORD_SIZE;
+            while (record.hasRemaining()) {
+                file.write(record, pos + record.position());
+            }
+        }
+        file.force(false);
+    }
+
+    private static void encode(PlayerStats p, ByteBuffer out) {
+        int base = out.position();
+        byte[] name = p.name.getBytes(StandardCharsets.UTF_8);
+        int nameLen = Math.min(name.length, NAME_BYTES);
+        out.putLong(p.uuid.getMostSignificantBits())
+                .putLong(p.uuid.getLeastSignificantBits())
+                .putInt(p.correct)
+                .putInt(p.streak)
+                .putInt(p.bestStreak)
+                .putLong(p.totalMillis)
+                .putInt(p.fastestMillis == Long.MAX_VALUE ? -1 : (int) Math.min(p.fastestMillis, Integer.MAX_VALUE))
+                .put((byte) nameLen)
+                .put(name, 0, nameLen);
+        out.position(base + RECORD_SIZE);
+    }
+
+    /** Stops the flusher after one last flush, waiting at most {@code timeoutMillis} for it. */
+    void close(long timeoutMillis) {
+        Future<?> last = flusher.submit(this::flushQuietly);
+        flusher.shutdown();
+        try {
+            last.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warning("Timed out saving trivia stats; recent results may be lost.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.warning("Failed to save trivia stats: " + e.getCause());
+        }
+        flusher.shutdownNow();
+        try {
+            file.close();
+        } catch (IOException e) {
+            log.warning("Error closing stats file: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.ahhmino.trivia;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing set of non-zero {@code long}s: one flat array, linear probing, backward-shift
+ * deletion. About 16 bytes per entry at the maximum load factor, with no boxing and no per-entry
+ * objects. Not thread-safe.
+ */
+final class LongHashSet {
+
+    private static final float MAX_LOAD = 0.5f;
+
+    private long[] table;
+    private int mask;
+    private int size;
+
+    LongHashSet(int expected) {
+        int cap = Integer.highestOneBit(Math.max(4, (int) (expected / MAX_LOAD)) - 1) << 1;
+        table = new long[cap];
+        mask = cap - 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(long key) {
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            long k = table[i];
+            if (k == 0) return false;
+            if (k == key) return true;
+        }
+    }
+
+    /** @return false if the key was already present */
+    boolean add(long key) {
+        if (key == 0) throw new IllegalArgumentException("0 is reserved");
+        int i = slot(key);
+        for (; ; i = (i + 1) & mask) {
+            long k = table[i];
+            if (k == 0) break;
+            if (k == key) return false;
+        }
+        table[i] = key;
+        if (++size > table.length * MAX_LOAD) resize(table.length * 2);
+        return true;
+    }
+
+    boolean remove(long key) {
+        int i = slot(key);
+        for (; ; i = (i + 1) & mask) {
+            long k = table[i];
+            if (k == 0) return false;
+            if (k == key) break;
+        }
+        // Shift later entries of the probe run back so lookups never hit a false gap
+        int gap = i;
+        for (int j = (gap + 1) & mask; table[j] != 0; j = (j + 1) & mask) {
+            int home = slot(table[j]);
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                table[gap] = table[j];
+                gap = j;
+            }
+        }
+        table[gap] = 0;
+        size--;
+        return true;
+    }
+
+    void clear() {
+        Arrays.fill(table, 0);
+        size = 0;
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & mask;
+    }
+
+    private void resize(int cap) {
+        long[] old = table;
+        table = new long[cap];
+        mask = cap - 1;
+        for (long k : old) {
+            if (k == 0) continue;
+            int i = slot(k);
+            while (table[i] != 0) i = (i + 1) & mask;
+            table[i] = k;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.ahhmino.trivia;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Streaming parser for OpenTriviaDB {@code api.php} responses.
+ *
+ * <p>Reads the body token by token with Gson's {@link JsonReader} and hands each question to a
+ * {@link Sink} as soon as its object closes, so memory use stays flat however large the batch is.
+ * Base64 fields are decoded by the JDK's decoder into a reusable scratch buffer instead of a fresh
+ * byte array per field. Instances hold that scratch state and are not thread-safe; use one per
+ * response.
+ *
+ * <p>{@link JsonReader} has no way to expose a value's characters without copying them, and
+ * {@link Base64.Decoder} only decodes whole arrays, so each field still costs the raw
+ * {@code nextString()} and its ASCII bytes as well as the decoded string; the scratch buffer only
+ * saves the decoder's output array.
+ */
+final class OpenTdbParser {
+
+    /** Receives questions in response order, along with the raw difficulty and type fields. */
+    interface Sink {
+        void accept(TriviaQuestion question, String difficulty, String type);
+    }
+
+    private static final Base64.Decoder BASE64 = Base64.getDecoder();
+
+    private final String encode;
+    private final List<String> incorrect = new ArrayList<>(4);
+    private byte[] scratch = new byte[256];
+    private int questionCount;
+
+    /** @param encode the {@code encode} parameter the request was made with ("base64", "url3986" or blank) */
+    OpenTdbParser(String encode) {
+        this.encode = encode == null ? "" : encode.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Parses a whole response body.
+     *
+     * @return the response_code, or -1 if the body had none
+     */
+    int parse(InputStream body, Sink sink) throws IOException {
+        int code = -1;
+        JsonReader reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "response_code" -> code = reader.nextInt();
+                case "results" -> {
+                    reader.beginArray();
+                    while (reader.hasNext()) readQuestion(reader, sink);
+                    reader.endArray();
+                }
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return code;
+    }
+
+    /** Questions handed to the sink so far. */
+    int questionCount() {
+        return questionCount;
+    }
+
+    /** Reads one question object (an element of {@code results}); local JSON packs use the same shape. */
+    void readQuestion(JsonReader reader, Sink sink) throws IOException {
+        String question = null;
+        String correct = null;
+        String difficulty = null;
+        String type = null;
+        incorrect.clear();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "question" -> question = text(reader);
+                case "correct_answer" -> correct = text(reader);
+                case "difficulty" -> difficulty = text(reader);
+                case "type" -> type = text(reader);
+                case "incorrect_answers" -> {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        String s = text(reader);
+                        if (s != null) incorrect.add(s);
+                    }
+                    reader.endArray();
+                }
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (question == null || question.isBlank() || correct == null || correct.isBlank()) return;
+
+        questionCount++;
+        sink.accept(shuffled(question, correct, incorrect), difficulty, type);
+    }
+
+    /** Builds a question with the right and wrong answers in a random order. */
+    static TriviaQuestion shuffled(String question, String correct, List<String> incorrect) {
+        return TriviaQuestion.shuffled(question, correct, incorrect, FingerprintIndex.of(question));
+    }
+
+    private String text(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        String raw = reader.nextString();
+        return switch (encode) {
+            case "base64" -> decodeBase64(raw);
+            case "url3986", "urllegacy" -> URLDecoder.decode(raw, StandardCharsets.UTF_8);
+            default -> raw;
+        };
+    }
+
+    /** Decodes standard base64 into the scratch buffer; returns the input unchanged if it isn't base64. */
+    String decodeBase64(String s) {
+        int max = s.length() / 4 * 3 + 3;
+        if (scratch.length < max) scratch = new byte[Math.max(max, scratch.length * 2)];
+        try {
+            int n = BASE64.decode(s.getBytes(StandardCharsets.ISO_8859_1), scratch);
+            return new String(scratch, 0, n, StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return s;
+        }
+    }
+}
@@ -0,0 +1,417 @@
+package com.ahhmino.trivia;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * An HTTP endpoint speaking the OpenTriviaDB {@code api.php} format: OpenTriviaDB itself, or any
+ * custom server that mirrors it.
+ *
+ * <p>Each session gets its own session token, so it isn't served questions it has already seen,
+ * plus its own backoff and amount state. Requests from every session, and from every other source
+ * on the same host, share the fetcher's rate limiter for that host. The API's response codes are
+ * acted on rather than just logged:
+ * <ul>
+ *   <li>1 (not enough questions): halve the amount and retry; the lower amount sticks for the query
+ *       for ten minutes</li>
+ *   <li>2 (invalid parameter): give up and back off</li>
+ *   <li>3 (token not found): request a new token and retry</li>
+ *   <li>4 (token exhausted): reset the token, restore the amount and retry</li>
+ *   <li>5 (rate limited), HTTP and network errors: exponential backoff with jitter, then retry</li>
+ * </ul>
+ */
+final class OpenTdbSource implements QuestionSource {
+
+    private static final int MAX_STEPS = 10; // requests one fetch may make before giving up
+    private static final long BACKOFF_BASE_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    private static final long BACKOFF_MAX_NANOS = TimeUnit.MINUTES.toNanos(5);
+    private static final long AMOUNT_CAP_MILLIS = TimeUnit.MINUTES.toMillis(10); // a lowered amount lapses after this
+
+    private final String name;
+    private final int weight;
+    private final String baseUrl;
+    private final boolean useTokens;
+    private final long rateLimitMillis;
+    private final long backoffBaseNanos;
+    private final long amountCapNanos;
+    private final QuestionFetcher fetcher;
+    private final Logger log;
+    private final Map<String, SessionState> states = new ConcurrentHashMap<>();
+
+    /**
+     * @param useTokens        request a session token per trivia session
+     * @param rateLimitSeconds minimum gap between requests to this endpoint (OpenTriviaDB allows one per 5s per IP)
+     */
+    OpenTdbSource(QuestionFetcher fetcher, String name, int weight, String baseUrl, boolean useTokens, int rateLimitSeconds) {
+        this(fetcher, name, weight, baseUrl, useTokens, Math.max(0, rateLimitSeconds) * 1000L, BACKOFF_BASE_MILLIS,
+                AMOUNT_CAP_MILLIS);
+    }
+
+    /** Millisecond limiter interval, backoff base and amount cap lifetime, so tests needn't wait out the real ones. */
+    OpenTdbSource(QuestionFetcher fetcher, String name, int weight, String baseUrl, boolean useTokens,
+                  long rateLimitMillis, long backoffBaseMillis, long amountCapMillis) {
+        this.fetcher = fetcher;
+        this.log = fetcher.log();
+        this.name = name;
+        this.weight = weight;
+        this.baseUrl = baseUrl;
+        this.useTokens = useTokens;
+        this.rateLimitMillis = Math.max(0, rateLimitMillis);
+        this.backoffBaseNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, backoffBaseMillis));
+        this.amountCapNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, amountCapMillis));
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public int weight() {
+        return weight;
+    }
+
+    @Override
+    public Handle fetch(String session, FetchQuery query, QuestionFetcher.Batch batch) {
+        SessionState state = states.computeIfAbsent(session, k -> new SessionState(backoffBaseNanos, amountCapNanos));
+        Job job = new Job(session, query, batch, state);
+        job.next();
+        return job;
+    }
+
+    /* ------------------ Fetch Job ------------------ */
+
+    /** One fetch for one session: a chain of rate-limited requests ending in a batch or giving up. */
+    private final class Job implements Handle {
+        private final String session;
+        private final FetchQuery query;
+        private final QuestionFetcher.Batch batch;
+        private final SessionState state;
+        private volatile CompletableFuture<?> request;
+        private long sentAt; // nanoTime the current question request went out
+        private int steps;
+        private boolean tokenReset; // only one reset per fetch, so an empty category can't loop
+
+        private Job(String session, FetchQuery query, QuestionFetcher.Batch batch, SessionState state) {
+            this.session = session;
+            this.query = query;
+            this.batch = batch;
+            this.state = state;
+        }
+
+        /** Stops the chain; a request already on the wire is cancelled and its response dropped. */
+        @Override
+        public void cancel() {
+            CompletableFuture<?> r = request;
+            if (r != null) r.cancel(true);
+        }
+
+        /** Waits out any backoff, then for a rate-limit permit, then sends the next request. */
+        private void next() {
+            if (batch.abandoned()) {
+                batch.finish();
+                return;
+            }
+            if (++steps > MAX_STEPS) {
+                log.warning("Giving up on this fetch for " + session + " from " + name + " after " + MAX_STEPS + " requests.");
+                state.failed();
+                batch.finish();
+                return;
+            }
+
+            long backoff = state.backoffRemaining();
+            if (backoff > 0) {
+                runAfter(backoff, this::acquire);
+            } else {
+                acquire();
+            }
+        }
+
+        /** The permit is reserved only once the backoff is over, so sends stay spaced by the limiter. */
+        private void acquire() {
+            if (batch.abandoned()) {
+                batch.finish();
+                return;
+            }
+            runAfter(fetcher.limiter(baseUrl, rateLimitMillis).reserve(), this::send);
+        }
+
+        private void runAfter(long delayNanos, Runnable task) {
+            Executor executor = delayNanos > 0
+                    ? CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS, fetcher.executor())
+                    : fetcher.executor();
+            try {
+                executor.execute(task);
+            } catch (Exception e) {
+                batch.finish(); // executor shut down
+            }
+        }
+
+        private void send() {
+            if (batch.abandoned()) {
+                batch.finish();
+                return;
+            }
+            if (!useTokens || state.tokenUnavailable) {
+                requestQuestions(null);
+            } else if (state.token == null) {
+                requestToken("command=request");
+            } else if (state.tokenExhausted) {
+                requestToken("command=reset&token=" + URLEncoder.encode(state.token, StandardCharsets.UTF_8));
+            } else {
+                requestQuestions(state.token);
+            }
+        }
+
+        /* ------------------ Questions ------------------ */
+
+        private void requestQuestions(String token) {
+            String url = query.url(baseUrl, state.amount(query, batch.amount()), token);
+            log.info("Fetching trivia for " + session + " from: " + url);
+
+            HttpRequest req = HttpRequest.newBuilder(URI.create(url)).GET().build();
+            sentAt = System.nanoTime();
+            CompletableFuture<HttpResponse<InputStream>> r =
+                    fetcher.http().sendAsync(req, HttpResponse.BodyHandlers.ofInputStream());
+            request = r;
+            r.thenAcceptAsync(this::readQuestions, fetcher.executor())
+                    .exceptionally(err -> {
+                        if (!batch.abandoned()) {
+                            fetcher.metrics().fetchErrors.increment();
+                            log.warning("Failed to fetch trivia from " + name + ": " + err.getMessage());
+                            retryAfterFailure();
+                        } else {
+                            batch.finish();
+                        }
+                        return null;
+                    });
+        }
+
+        /** Streams a response body into the batch, then acts on the response code. */
+        private void readQuestions(HttpResponse<InputStream> response) {
+            TriviaMetrics metrics = fetcher.metrics();
+            metrics.fetchLatency.record(System.nanoTime() - sentAt);
+            int code;
+            OpenTdbParser parser = new OpenTdbParser(query.encode());
+            try (InputStream body = response.body()) {
+                if (batch.abandoned()) {
+                    log.fine("Discarding trivia response from a superseded fetch.");
+                    batch.finish();
+                    return;
+                }
+                if (response.statusCode() != 200) {
+                    metrics.fetchErrors.increment();
+                    log.warning(name + " HTTP " + response.statusCode() + " (no questions added)");
+                    retryAfterFailure();
+                    return;
+                }
+                long start = System.nanoTime();
+                code = parser.parse(body, batch);
+                metrics.parseTime.record(System.nanoTime() - start);
+            } catch (Exception e) {
+                log.warning("Error parsing trivia from " + name + ": " + e.getMessage());
+                retryAfterFailure();
+                return;
+            }
+
+            metrics.responseCode(code);
+            switch (code) {
+                case 0 -> {
+                    state.succeeded();
+                    batch.finish();
+                    log.info("Fetched " + parser.questionCount() + " questions for " + session + " from " + name
+                            + (batch.repeats() > 0 ? ", skipped " + batch.repeats() + " recent repeats" : "")
+                            + " (queue=" + batch.queueSize() + ")");
+                }
+                case 1 -> {
+                    int lowered = state.lowerAmount(query, batch.amount());
+                    if (lowered > 0) {
+                        log.info(name + " has too few questions for " + session + "; lowering amount to " + lowered);
+                        next();
+                    } else {
+                        log.warning(name + " has no questions for " + session + "'s category/difficulty/type.");
+                        state.failed();
+                        batch.finish();
+                    }
+                }
+                case 2 -> {
+                    log.warning(name + " rejected the query for " + session + " (response_code=2, invalid parameter)");
+                    state.failed();
+                    batch.finish();
+                }
+                case 3 -> {
+                    log.fine(name + " session token for " + session + " expired; requesting a new one.");
+                    state.token = null;
+                    next();
+                }
+                case 4 -> {
+                    if (tokenReset) {
+                        state.failed();
+                        batch.finish();
+                        return;
+                    }
+                    log.info("Every question for " + session + " has been served; resetting its session token.");
+                    tokenReset = true;
+                    state.tokenExhausted = true;
+                    next();
+                }
+                case 5 -> {
+                    log.fine(name + " rate limit hit for " + session + "; backing off.");
+                    retryAfterFailure();
+                }
+                default -> {
+                    log.warning(name + " response_code=" + code + " (no questions added)");
+                    state.failed();
+                    batch.finish();
+                }
+            }
+        }
+
+        /* ------------------ Session Token ------------------ */
+
+        private void requestToken(String command) {
+            URI uri = URI.create(baseUrl).resolve("api_token.php?" + command);
+            HttpRequest req = HttpRequest.newBuilder(uri).GET().build();
+            CompletableFuture<HttpResponse<String>> r = fetcher.http().sendAsync(req, HttpResponse.BodyHandlers.ofString());
+            request = r;
+            r.thenAcceptAsync(this::readToken, fetcher.executor())
+                    .exceptionally(err -> {
+                        if (!batch.abandoned()) {
+                            log.warning("Failed to get a session token from " + name + ": " + err.getMessage());
+                            retryAfterFailure();
+                        } else {
+                            batch.finish();
+                        }
+                        return null;
+                    });
+        }
+
+        private void readToken(HttpResponse<String> response) {
+            if (batch.abandoned()) {
+                batch.finish();
+                return;
+            }
+            if (response.statusCode() != 200) {
+                log.warning(name + " token HTTP " + response.statusCode());
+                retryAfterFailure();
+                return;
+            }
+
+            String token = null;
+            int code = -1;
+            try {
+                JsonObject body = JsonParser.parseString(response.body()).getAsJsonObject();
+                JsonElement c = body.get("response_code");
+                JsonElement t = body.get("token");
+                if (c != null) code = c.getAsInt();
+                if (t != null && !t.isJsonNull()) token = t.getAsString();
+            } catch (RuntimeException e) {
+                log.warning("Error parsing " + name + " token response: " + e.getMessage());
+            }
+
+            if (code == 5) {
+                retryAfterFailure();
+                return;
+            }
+            if (code != 0 || token == null || token.isEmpty()) {
+                // Keep serving questions without a token rather than stalling the session
+                log.warning("Could not get a session token from " + name + " for " + session
+                        + " (response_code=" + code + "); fetching without one.");
+                state.tokenUnavailable = true;
+            } else {
+                state.token = token;
+                if (state.tokenExhausted) state.resetAmount();
+                state.tokenExhausted = false;
+            }
+            next();
+        }
+
+        private void retryAfterFailure() {
+            state.failed();
+            next();
+        }
+    }
+
+    /* ------------------ Session State ------------------ */
+
+    /** What the source remembers about a session between fetches. */
+    private static final class SessionState {
+        private final long backoffBaseNanos;
+        private final long amountCapNanos;
+
+        volatile String token;
+        volatile boolean tokenExhausted;
+        volatile boolean tokenUnavailable;
+
+        private FetchQuery query; // the query the lowered amount applies to
+        private int amount;
+        private long amountLapses; // nanoTime a lowered amount goes back to the query's own
+        private int failures;
+        private long notBefore = System.nanoTime();
+
+        SessionState(long backoffBaseNanos, long amountCapNanos) {
+            this.backoffBaseNanos = backoffBaseNanos;
+            this.amountCapNanos = amountCapNanos;
+        }
+
+        /**
+         * The amount to ask for: {@code requested}, or less if the source has recently had too few
+         * for this query.
+         */
+        synchronized int amount(FetchQuery q, int requested) {
+            if (!q.equals(query) || (amount < q.amount() && System.nanoTime() - amountLapses >= 0)) {
+                query = q;
+                amount = q.amount();
+            }
+            return Math.min(amount, requested);
+        }
+
+        /**
+         * Halves the amount for the current query; returns the new amount, or 0 if it was already 1.
+         * A short request (the prefetch asking for less than the query's amount) lowers it too, so
+         * the cap lapses after a while rather than holding for good.
+         */
+        synchronized int lowerAmount(FetchQuery q, int requested) {
+            int current = amount(q, requested);
+            if (current <= 1) return 0;
+            amount = current / 2;
+            amountLapses = System.nanoTime() + amountCapNanos;
+            return amount;
+        }
+
+        synchronized void resetAmount() {
+            query = null;
+        }
+
+        synchronized void succeeded() {
+            failures = 0;
+        }
+
+        /** Pushes the next request back by an exponentially growing, jittered delay. */
+        synchronized void failed() {
+            failures = Math.min(failures + 1, 20);
+            long ceiling = Math.min(BACKOFF_MAX_NANOS, backoffBaseNanos << Math.min(failures - 1, 16));
+            long delay = ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+            notBefore = System.nanoTime() + delay;
+        }
+
+        synchronized long backoffRemaining() {
+            return Math.max(0, notBefore - System.nanoTime());
+        }
+    }
+}
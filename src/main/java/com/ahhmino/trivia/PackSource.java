@@ -0,0 +1,398 @@
+package com.ahhmino.trivia;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Logger;
+
+/**
+ * A local question pack: one question per line, either as JSON (the shape of an OpenTriviaDB
+ * result, plain text, with an optional numeric {@code category_id}) or as CSV
+ * ({@code category,difficulty,type,question,correct_answer,incorrect_answer...}, quoted fields
+ * allowed but not spanning lines, an optional header row).
+ *
+ * <p>Nothing is read at startup. On the first fetch the file is memory-mapped and its line offsets
+ * and filter metadata are loaded from a {@code <pack>.idx} sidecar, or built in one pass and saved
+ * there if the sidecar is missing or the pack changed. After that a fetch decodes only the lines it
+ * serves, so packs with hundreds of thousands of questions cost a few bytes of heap per line.
+ */
+final class PackSource implements QuestionSource {
+
+    private static final int INDEX_MAGIC = 0x54504931; // "TPI1"
+    private static final int INDEX_HEADER_SIZE = 24;   // magic(4) size(8) modified(8) count(4)
+    private static final int ENTRY_SIZE = 12;          // offset(8) category(2) difficulty(1) type(1)
+
+    private final QuestionFetcher fetcher;
+    private final Logger log;
+    private final String name;
+    private final int weight;
+    private final File file;
+    private final boolean csv;
+
+    // Guarded by this
+    private Pack pack;
+    private final Map<String, Rotation> rotations = new HashMap<>();
+
+    PackSource(QuestionFetcher fetcher, String name, int weight, File file) {
+        this.fetcher = fetcher;
+        this.log = fetcher.log();
+        this.name = name;
+        this.weight = weight;
+        this.file = file;
+        this.csv = file.getName().toLowerCase(Locale.ROOT).endsWith(".csv");
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public int weight() {
+        return weight;
+    }
+
+    @Override
+    public boolean cached() {
+        return false;
+    }
+
+    @Override
+    public Handle fetch(String session, FetchQuery query, QuestionFetcher.Batch batch) {
+        Future<?> task = fetcher.executor().submit(() -> serve(session, query, batch));
+        return () -> task.cancel(true);
+    }
+
+    @Override
+    public synchronized void close() {
+        pack = null;
+        rotations.clear();
+    }
+
+    private void serve(String session, FetchQuery query, QuestionFetcher.Batch batch) {
+        try {
+            Pack p;
+            int[] ids;
+            synchronized (this) {
+                p = pack();
+                ids = take(p, session, query, batch.amount());
+            }
+            OpenTdbParser parser = new OpenTdbParser("");
+            for (int id : ids) {
+                if (batch.abandoned()) break;
+                p.read(id, parser, batch);
+            }
+            log.fine("Served " + batch.delivered() + " questions for " + session + " from pack " + name);
+        } catch (IOException | RuntimeException e) {
+            log.warning("Error reading question pack " + name + ": " + e.getMessage());
+        } finally {
+            batch.finish();
+        }
+    }
+
+    private Pack pack() throws IOException {
+        if (pack == null) {
+            long start = System.nanoTime();
+            pack = Pack.open(file, csv);
+            log.info("Opened question pack " + name + " (" + pack.count + " questions) in "
+                    + (System.nanoTime() - start) / 1_000_000 + "ms");
+        }
+        return pack;
+    }
+
+    /* ------------------ Rotation ------------------ */
+
+    /** One session's shuffled pass over the pack entries matching its filter. */
+    private static final class Rotation {
+        final QuestionStore.Filter filter;
+        final int[] ids;
+        int cursor;
+
+        Rotation(QuestionStore.Filter filter, int[] ids) {
+            this.filter = filter;
+            this.ids = ids;
+        }
+    }
+
+    /** The next {@code amount} entries of the session's rotation, reshuffling when it runs out. */
+    private int[] take(Pack p, String session, FetchQuery query, int amount) {
+        QuestionStore.Filter filter = query.storeFilter();
+        Rotation r = rotations.get(session);
+        if (r == null || !r.filter.equals(filter)) {
+            r = new Rotation(filter, p.matching(filter));
+            shuffle(r.ids);
+            rotations.put(session, r);
+        }
+        int n = Math.min(amount, r.ids.length);
+        int[] out = new int[n];
+        for (int i = 0; i < n; i++) {
+            if (r.cursor == r.ids.length) {
+                shuffle(r.ids);
+                r.cursor = 0;
+            }
+            out[i] = r.ids[r.cursor++];
+        }
+        return out;
+    }
+
+    private static void shuffle(int[] ids) {
+        Random rnd = ThreadLocalRandom.current();
+        for (int i = ids.length - 1; i > 0; i--) {
+            int j = rnd.nextInt(i + 1);
+            int tmp = ids[i];
+            ids[i] = ids[j];
+            ids[j] = tmp;
+        }
+    }
+
+    /* ------------------ Pack File ------------------ */
+
+    /** The mapped pack plus its line index. Immutable once opened. */
+    private static final class Pack {
+        final MappedByteBuffer data;
+        final boolean csv;
+        final int count;
+        final long[] offsets;
+        final short[] categories;
+        final byte[] difficulties;
+        final byte[] types;
+
+        private Pack(MappedByteBuffer data, boolean csv, int count, long[] offsets,
+                     short[] categories, byte[] difficulties, byte[] types) {
+            this.data = data;
+            this.csv = csv;
+            this.count = count;
+            this.offsets = offsets;
+            this.categories = categories;
+            this.difficulties = difficulties;
+            this.types = types;
+        }
+
+        static Pack open(File file, boolean csv) throws IOException {
+            MappedByteBuffer data;
+            long size;
+            try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                size = ch.size();
+                if (size > Integer.MAX_VALUE) throw new IOException(file.getName() + " is larger than 2 GB");
+                data = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+
+            File sidecar = new File(file.getPath() + ".idx");
+            Pack p = loadIndex(sidecar, data, csv, size, file.lastModified());
+            if (p == null) {
+                p = buildIndex(data, csv);
+                p.saveIndex(sidecar, size, file.lastModified());
+            }
+            return p;
+        }
+
+        /** Reads the sidecar if it was written for this exact pack file. */
+        private static Pack loadIndex(File sidecar, MappedByteBuffer data, boolean csv, long size, long modified) throws IOException {
+            if (!sidecar.isFile()) return null;
+            try (FileChannel ch = FileChannel.open(sidecar.toPath(), StandardOpenOption.READ)) {
+                if (ch.size() < INDEX_HEADER_SIZE) return null;
+                MappedByteBuffer idx = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                if (idx.getInt() != INDEX_MAGIC || idx.getLong() != size || idx.getLong() != modified) return null;
+                int n = idx.getInt();
+                if (n < 0 || ch.size() != INDEX_HEADER_SIZE + (long) n * ENTRY_SIZE) return null;
+
+                long[] offsets = new long[n];
+                short[] categories = new short[n];
+                byte[] difficulties = new byte[n];
+                byte[] types = new byte[n];
+                for (int i = 0; i < n; i++) {
+                    offsets[i] = idx.getLong();
+                    categories[i] = idx.getShort();
+                    difficulties[i] = idx.get();
+                    types[i] = idx.get();
+                    if (offsets[i] < 0 || offsets[i] >= size) return null;
+                }
+                return new Pack(data, csv, n, offsets, categories, difficulties, types);
+            }
+        }
+
+        /** One pass over the file: every usable line's offset and filter fields. */
+        private static Pack buildIndex(MappedByteBuffer data, boolean csv) {
+            int cap = 1024;
+            long[] offsets = new long[cap];
+            short[] categories = new short[cap];
+            byte[] difficulties = new byte[cap];
+            byte[] types = new byte[cap];
+            int n = 0;
+
+            int limit = data.limit();
+            int pos = 0;
+            boolean first = true;
+            while (pos < limit) {
+                int end = lineEnd(data, pos);
+                String line = line(data, pos, end);
+                int start = pos;
+                pos = end + 1;
+
+                boolean header = first && csv && isCsvHeader(line);
+                first = false;
+                if (header || line.isBlank()) continue;
+
+                int[] meta = csv ? csvMeta(line) : jsonMeta(line);
+                if (meta == null) continue;
+
+                if (n == cap) {
+                    cap *= 2;
+                    offsets = Arrays.copyOf(offsets, cap);
+                    categories = Arrays.copyOf(categories, cap);
+                    difficulties = Arrays.copyOf(difficulties, cap);
+                    types = Arrays.copyOf(types, cap);
+                }
+                offsets[n] = start;
+                categories[n] = (short) meta[0];
+                difficulties[n] = (byte) meta[1];
+                types[n] = (byte) meta[2];
+                n++;
+            }
+            return new Pack(data, csv, n, offsets, categories, difficulties, types);
+        }
+
+        private void saveIndex(File sidecar, long size, long modified) throws IOException {
+            ByteBuffer out = ByteBuffer.allocate(INDEX_HEADER_SIZE + count * ENTRY_SIZE);
+            out.putInt(INDEX_MAGIC).putLong(size).putLong(modified).putInt(count);
+            for (int i = 0; i < count; i++) {
+                out.putLong(offsets[i]).putShort(categories[i]).put(difficulties[i]).put(types[i]);
+            }
+            out.flip();
+            try (FileChannel ch = FileChannel.open(sidecar.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (out.hasRemaining()) ch.write(out);
+            }
+        }
+
+        int[] matching(QuestionStore.Filter filter) {
+            int[] ids = new int[count];
+            int n = 0;
+            for (int i = 0; i < count; i++) {
+                if (filter.matches(categories[i], difficulties[i], types[i])) ids[n++] = i;
+            }
+            return n == count ? ids : Arrays.copyOf(ids, n);
+        }
+
+        /** Decodes one entry and hands it to the sink. */
+        void read(int id, OpenTdbParser parser, OpenTdbParser.Sink sink) throws IOException {
+            int start = (int) offsets[id];
+            String line = line(data, start, lineEnd(data, start));
+            if (!csv) {
+                parser.readQuestion(new JsonReader(new StringReader(line)), sink);
+                return;
+            }
+            List<String> f = csvFields(line);
+            if (f.size() < 5 || f.get(3).isEmpty() || f.get(4).isEmpty()) return;
+            List<String> incorrect = new ArrayList<>(f.size() - 5);
+            for (int i = 5; i < f.size(); i++) {
+                if (!f.get(i).isEmpty()) incorrect.add(f.get(i));
+            }
+            sink.accept(OpenTdbParser.shuffled(f.get(3), f.get(4), incorrect), f.get(1), f.get(2));
+        }
+    }
+
+    /* ------------------ Line Parsing ------------------ */
+
+    private static int lineEnd(ByteBuffer data, int pos) {
+        int limit = data.limit();
+        while (pos < limit && data.get(pos) != '\n') pos++;
+        return pos;
+    }
+
+    private static String line(ByteBuffer data, int start, int end) {
+        if (end > start && data.get(end - 1) == '\r') end--;
+        byte[] bytes = new byte[end - start];
+        data.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isCsvHeader(String line) {
+        List<String> f = csvFields(line);
+        return f.size() >= 4 && f.get(3).equalsIgnoreCase("question");
+    }
+
+    /** {category, difficulty, type} codes of a CSV line, or null if it has no question. */
+    private static int[] csvMeta(String line) {
+        List<String> f = csvFields(line);
+        if (f.size() < 5 || f.get(3).isEmpty() || f.get(4).isEmpty()) return null;
+        return new int[]{QuestionStore.categoryCode(f.get(0)),
+                QuestionStore.difficultyCode(f.get(1)), QuestionStore.typeCode(f.get(2))};
+    }
+
+    /** {category, difficulty, type} codes of a JSON line, or null if it isn't a question object. */
+    private static int[] jsonMeta(String line) {
+        int category = 0;
+        String difficulty = null;
+        String type = null;
+        boolean question = false;
+        try {
+            JsonReader reader = new JsonReader(new StringReader(line));
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String key = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                    continue;
+                }
+                switch (key) {
+                    case "category_id", "category" -> {
+                        if (reader.peek() == JsonToken.NUMBER) {
+                            category = reader.nextInt();
+                        } else {
+                            int code = QuestionStore.categoryCode(reader.nextString());
+                            if (code != 0) category = code;
+                        }
+                    }
+                    case "difficulty" -> difficulty = reader.nextString();
+                    case "type" -> type = reader.nextString();
+                    case "question" -> question = !reader.nextString().isBlank();
+                    default -> reader.skipValue();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+        if (!question) return null;
+        return new int[]{category, QuestionStore.difficultyCode(difficulty), QuestionStore.typeCode(type)};
+    }
+
+    static List<String> csvFields(String line) {
+        List<String> out = new ArrayList<>(8);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                out.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        out.add(field.toString().trim());
+        return out;
+    }
+}
@@ -0,0 +1,96 @@
+package com.ahhmino.trivia;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when a session refills its queue and how many questions to ask for, from how fast the
+ * session actually asks questions and how long its fetches actually take.
+ *
+ * <p>The refill trigger (low-water mark) is the number of questions the session gets through
+ * during one pessimistic fetch: the latency average plus four mean deviations, as TCP does for
+ * its retransmit timer, plus one for the question about to be asked. The batch tops the queue up
+ * to roughly {@code refillSeconds} of play, capped by the configured {@code amount}. A batch
+ * smaller than that would mean more requests for the same questions, and a larger one would be
+ * questions held in memory that the session won't need for a while.
+ *
+ * <p>The ask interval starts at the configured answer + between delay, divided by the category's
+ * share of the session's questions, and then follows the observed gaps, so early reveals and lag
+ * are accounted for. Gaps much longer than expected (nobody online, trivia disabled) are ignored.
+ * Driver thread only.
+ */
+final class PrefetchController {
+
+    private static final double ALPHA = 0.25; // weight of a new sample in the moving averages
+    private static final long MILLIS_PER_TICK = 50;
+    private static final double INITIAL_LATENCY_MS = 2_000;
+    private static final int MAX_GAP_CYCLES = 4; // longer ask gaps are pauses, not play
+
+    private double cycleMs;     // expected gap between asks from this category
+    private double intervalMs;  // moving average of the time between asks
+    private double latencyMs = INITIAL_LATENCY_MS;
+    private double latencyDevMs = INITIAL_LATENCY_MS / 2;
+    private boolean sampled;    // any fetch latency observed yet
+    private long refillMs;
+    private long lastAskNanos;
+
+    /** @param share the category's fraction of the session's questions (its weight over the total) */
+    PrefetchController(SessionConfig cfg, double share) {
+        reconfigure(cfg, share);
+    }
+
+    /** Reseeds the ask interval if the session's timing changed; fetch latency is kept. */
+    void reconfigure(SessionConfig cfg, double share) {
+        double cycle = (cfg.answerDelayTicks() + cfg.betweenQuestionsDelayTicks()) * MILLIS_PER_TICK / share;
+        if (cycle != cycleMs) {
+            cycleMs = cycle;
+            intervalMs = cycle;
+            lastAskNanos = 0;
+        }
+        refillMs = TimeUnit.SECONDS.toMillis(cfg.prefetchRefillSeconds());
+    }
+
+    /** Called each time the session asks a question. */
+    void asked() {
+        long now = System.nanoTime();
+        if (lastAskNanos != 0) {
+            double gap = (now - lastAskNanos) / 1e6;
+            if (gap <= cycleMs * MAX_GAP_CYCLES) intervalMs += ALPHA * (gap - intervalMs);
+        }
+        lastAskNanos = now;
+    }
+
+    /** Called once per fetch with the time from starting it to its first questions arriving. */
+    void fetched(long latencyNanos) {
+        double sample = latencyNanos / 1e6;
+        if (!sampled) {
+            sampled = true;
+            latencyMs = sample;
+            latencyDevMs = sample / 2;
+            return;
+        }
+        latencyDevMs += ALPHA * (Math.abs(sample - latencyMs) - latencyDevMs);
+        latencyMs += ALPHA * (sample - latencyMs);
+    }
+
+    /** Refill once the queue holds fewer questions than this. */
+    int lowWater() {
+        double worst = latencyMs + 4 * latencyDevMs;
+        return (int) Math.ceil(worst / interval()) + 1;
+    }
+
+    /** Questions to ask for in the next fetch, at most {@code cap}. */
+    int batchSize(int cap) {
+        int wanted = (int) Math.ceil(refillMs / interval());
+        return Math.max(1, Math.min(cap, Math.max(wanted, lowWater())));
+    }
+
+    private double interval() {
+        return Math.max(intervalMs, MILLIS_PER_TICK);
+    }
+
+    String describe(int cap) {
+        return String.format(Locale.ROOT, "low=%d batch=%d every %.1fs, fetch %.0fms±%.0f",
+                lowWater(), batchSize(cap), intervalMs / 1000, latencyMs, latencyDevMs);
+    }
+}
@@ -0,0 +1,269 @@
+package com.ahhmino.trivia;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * The fetch layer shared by every session: one HTTP client, one executor for network callbacks
+ * and parsing, the on-disk question store, the repeat window, a request limiter per remote host
+ * and the configured {@link QuestionSource}s. Sessions own their queues; this class only fills them.
+ *
+ * <p>Each fetch goes to the next source in a smooth weighted round-robin, so with weights 3 and 1
+ * the order is A A B A rather than A A A B, and sources interleave evenly over time.
+ */
+final class QuestionFetcher {
+
+    private static final int PUBLISH_CHUNK = 50; // questions handed to the queue per publish while streaming
+
+    /** A fetch in progress and the queue generation it was started for. */
+    static final class InFlight {
+        private final int generation;
+        private final Batch batch;
+        private final QuestionSource.Handle handle;
+
+        private InFlight(int generation, Batch batch, QuestionSource.Handle handle) {
+            this.generation = generation;
+            this.batch = batch;
+            this.handle = handle;
+        }
+
+        int generation() {
+            return generation;
+        }
+
+        boolean isDone() {
+            return batch.completion.isDone();
+        }
+
+        /** Nanos from starting the fetch to its first questions reaching the queue, or -1 if none have yet. */
+        long latencyNanos() {
+            long first = batch.firstPublish;
+            return first == 0 ? -1 : first - batch.started;
+        }
+
+        void cancel() {
+            batch.completion.complete(null);
+            handle.cancel();
+        }
+    }
+
+    private final Logger log;
+    private final QuestionStore store; // null if disabled
+    private final FingerprintIndex recent; // null if repeat suppression is off
+    private final TriviaMetrics metrics;
+    private final HttpClient http = HttpClient.newHttpClient();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Guarded by this: the sources and their smooth weighted round-robin counters
+    private List<QuestionSource> sources = List.of();
+    private int[] current = new int[0];
+    private final Map<String, TokenBucket> limiters = new HashMap<>(); // by host; outlives the sources
+
+    QuestionFetcher(Logger log, QuestionStore store, FingerprintIndex recent, TriviaMetrics metrics) {
+        this.log = log;
+        this.store = store;
+        this.recent = recent;
+        this.metrics = metrics;
+    }
+
+    Logger log() {
+        return log;
+    }
+
+    TriviaMetrics metrics() {
+        return metrics;
+    }
+
+    HttpClient http() {
+        return http;
+    }
+
+    ExecutorService executor() {
+        return executor;
+    }
+
+    QuestionStore store() {
+        return store;
+    }
+
+    /** Replaces the sources, closing the old ones; fetches already running finish on the old source. */
+    void setSources(List<QuestionSource> next) {
+        List<QuestionSource> old;
+        synchronized (this) {
+            old = sources;
+            sources = List.copyOf(next);
+            current = new int[sources.size()];
+        }
+        for (QuestionSource s : old) s.close();
+    }
+
+    synchronized List<QuestionSource> sources() {
+        return sources;
+    }
+
+    /**
+     * The request limiter for {@code url}'s host, shared by every source on that host, and across
+     * reloads, so old and new instances are spaced against each other. A source asking for a
+     * different interval replaces the bucket with one that carries on from its schedule.
+     */
+    synchronized TokenBucket limiter(String url, long intervalMillis) {
+        String host;
+        try {
+            String authority = URI.create(url).getAuthority();
+            host = authority == null ? url : authority.toLowerCase(Locale.ROOT);
+        } catch (IllegalArgumentException e) {
+            host = url;
+        }
+        long interval = Math.max(0, intervalMillis);
+        TokenBucket bucket = limiters.get(host);
+        if (bucket == null) {
+            bucket = new TokenBucket(1, interval, TimeUnit.MILLISECONDS);
+        } else if (bucket.intervalNanos() != Math.max(1, TimeUnit.MILLISECONDS.toNanos(interval))) {
+            bucket = new TokenBucket(bucket, interval, TimeUnit.MILLISECONDS);
+        } else {
+            return bucket;
+        }
+        limiters.put(host, bucket);
+        return bucket;
+    }
+
+    /**
+     * Fetches up to {@code amount} questions for {@code query} into {@code target} from the next
+     * source in rotation, tagged with the target's current generation. Returns null if no source
+     * is configured.
+     */
+    InFlight fetch(String session, FetchQuery query, int amount, QuestionPipeline target) {
+        QuestionSource source = pick();
+        if (source == null) return null;
+        Batch batch = new Batch(query, Math.max(1, Math.min(amount, query.amount())), target, source.cached());
+        QuestionSource.Handle handle = source.fetch(session, query, batch);
+        return new InFlight(batch.generation, batch, handle);
+    }
+
+    /** Smooth weighted round-robin: raise every counter by its weight, take the highest, lower it by the total. */
+    private synchronized QuestionSource pick() {
+        int best = -1;
+        int total = 0;
+        for (int i = 0; i < sources.size(); i++) {
+            int w = sources.get(i).weight();
+            if (w <= 0) continue;
+            current[i] += w;
+            total += w;
+            if (best < 0 || current[i] > current[best]) best = i;
+        }
+        if (best < 0) return null;
+        current[best] -= total;
+        return sources.get(best);
+    }
+
+    void close() {
+        setSources(List.of());
+        executor.shutdownNow();
+    }
+
+    /* ------------------ Batches ------------------ */
+
+    /**
+     * Where a source delivers one fetch's questions. Saves each to the store (for network sources),
+     * drops any asked inside the repeat window, and publishes the rest to the session's queue every
+     * {@link #PUBLISH_CHUNK} questions. A source delivers from one thread at a time.
+     */
+    final class Batch implements OpenTdbParser.Sink {
+        private final FetchQuery query;
+        private final int amount;
+        private final QuestionPipeline target;
+        private final int generation;
+        private final boolean cache;
+        private final int categoryCode;
+        private final List<TriviaQuestion> chunk = new ArrayList<>(PUBLISH_CHUNK);
+        private final CompletableFuture<Void> completion = new CompletableFuture<>();
+        private final long started = System.nanoTime();
+        private volatile long firstPublish; // nanoTime of the first questions published, 0 until then
+        private int delivered;
+        private int repeats;
+
+        private Batch(FetchQuery query, int amount, QuestionPipeline target, boolean cache) {
+            this.query = query;
+            this.amount = amount;
+            this.target = target;
+            this.generation = target.generation();
+            this.cache = cache;
+            this.categoryCode = query.categoryCode();
+        }
+
+        /** True once the fetch was cancelled or the queue was reset; sources should stop early. */
+        boolean abandoned() {
+            return completion.isDone() || generation != target.generation();
+        }
+
+        @Override
+        public void accept(TriviaQuestion q, String difficulty, String type) {
+            if (cache) storeQuestion(q, categoryCode, QuestionStore.difficultyCode(difficulty), QuestionStore.typeCode(type));
+            if (recent != null && recent.contains(q.fingerprint())) {
+                repeats++;
+                metrics.questionsDuplicate.increment();
+                return;
+            }
+            chunk.add(q);
+            delivered++;
+            if (chunk.size() == PUBLISH_CHUNK) publish();
+        }
+
+        /** Publishes whatever is left and marks the fetch done. */
+        void finish() {
+            if (!chunk.isEmpty()) publish();
+            completion.complete(null);
+        }
+
+        private void publish() {
+            if (!abandoned() && target.publish(generation, chunk)) {
+                if (firstPublish == 0) firstPublish = System.nanoTime();
+                metrics.questionsFetched.add(chunk.size());
+            } else {
+                metrics.questionsDropped.add(chunk.size());
+            }
+            chunk.clear();
+        }
+
+        FetchQuery query() {
+            return query;
+        }
+
+        /** How many questions this fetch asked for; never more than {@code query().amount()}. */
+        int amount() {
+            return amount;
+        }
+
+        int delivered() {
+            return delivered;
+        }
+
+        int repeats() {
+            return repeats;
+        }
+
+        int queueSize() {
+            return target.size();
+        }
+    }
+
+    private void storeQuestion(TriviaQuestion q, int category, byte difficulty, byte type) {
+        if (store == null) return;
+        try {
+            store.append(q, category, difficulty, type);
+        } catch (IOException e) {
+            log.warning("Error writing question store: " + e.getMessage());
+        }
+    }
+}
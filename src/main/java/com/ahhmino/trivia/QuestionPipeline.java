@@ -0,0 +1,111 @@
+package com.ahhmino.trivia;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free multi-producer / single-consumer handoff of fetched questions.
+ *
+ * <p>Fetch threads {@link #publish} whole batches with a single atomic swap of the tail; the main
+ * thread is the only consumer and walks the linked batches with plain reads, so {@link #poll()}
+ * and {@link #clear()} never block or take a lock. A batch whose link is still being written by
+ * its producer simply isn't visible yet and shows up on a later poll.
+ *
+ * <p>Every batch is tagged with the {@link #generation()} its fetch started under. {@link #clear()}
+ * starts a new generation, and batches from older generations are dropped wherever they are seen,
+ * so a response that lands after a clear can never leak into the fresh queue.
+ */
+final class QuestionPipeline {
+
+    private static final class Batch {
+        final int generation;
+        final TriviaQuestion[] items;
+        volatile Batch next;
+
+        Batch(int generation, TriviaQuestion[] items) {
+            this.generation = generation;
+            this.items = items;
+        }
+    }
+
+    private final AtomicReference<Batch> tail;
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile int generation; // written by the consumer only
+
+    // Consumer-only state: the batch currently being drained and the position within it
+    private Batch head;
+    private int index;
+
+    QuestionPipeline() {
+        Batch stub = new Batch(0, new TriviaQuestion[0]);
+        this.head = stub;
+        this.tail = new AtomicReference<>(stub);
+    }
+
+    /** Current generation; capture it when starting a fetch and pass it back to {@link #publish}. */
+    int generation() {
+        return generation;
+    }
+
+    /**
+     * Producer side; safe to call from any thread. Publishes the whole batch in one step.
+     *
+     * @return false if the batch was dropped because its generation has been cleared
+     */
+    boolean publish(int gen, Collection<TriviaQuestion> questions) {
+        if (gen != generation) return false;
+        if (questions.isEmpty()) return true;
+        Batch batch = new Batch(gen, questions.toArray(new TriviaQuestion[0]));
+        size.addAndGet(batch.items.length);
+        Batch prev = tail.getAndSet(batch);
+        prev.next = batch;
+        return true;
+    }
+
+    /** Consumer side (main thread only). Returns null if nothing is currently visible. */
+    TriviaQuestion poll() {
+        while (true) {
+            TriviaQuestion[] items = head.items;
+            if (index < items.length) {
+                TriviaQuestion q = items[index];
+                items[index++] = null; // let consumed questions be collected with the batch still linked
+                size.decrementAndGet();
+                return q;
+            }
+            Batch next = head.next;
+            if (next == null) return null;
+            head = next;
+            index = 0;
+            if (next.generation != generation) {
+                // published just after a clear; skip it whole
+                size.addAndGet(-next.items.length);
+                Arrays.fill(next.items, null);
+                index = next.items.length;
+            }
+        }
+    }
+
+    /**
+     * Consumer side (main thread only). Drops every question published so far and starts a new
+     * generation, invalidating batches still being fetched.
+     */
+    void clear() {
+        generation++;
+        int dropped = head.items.length - index;
+        Batch next;
+        while ((next = head.next) != null) {
+            head = next;
+            dropped += next.items.length;
+        }
+        Arrays.fill(head.items, null);
+        index = head.items.length;
+        if (dropped > 0) size.addAndGet(-dropped);
+    }
+
+    /** Approximate number of queued questions; safe to read from any thread. */
+    int size() {
+        return Math.max(0, size.get());
+    }
+}
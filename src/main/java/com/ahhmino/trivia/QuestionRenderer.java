@@ -0,0 +1,76 @@
+package com.ahhmino.trivia;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import net.kyori.adventure.text.format.NamedTextColor;
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Builds the chat messages for a question. The prefix is parsed once per config load, and each
+ * question is rendered once into a single multi-line component so it can be sent to every
+ * recipient in one broadcast. Free-text questions hide the choices. Callers pass the choices in,
+ * decoded once per round, since {@link TriviaQuestion#choices()} decodes them on every call.
+ */
+final class QuestionRenderer {
+
+    static final char[] LETTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
+
+    private final Component prefix;
+    private final boolean freeText;
+
+    QuestionRenderer(String legacyPrefix, boolean freeText) {
+        this.prefix = LegacyComponentSerializer.legacyAmpersand().deserialize(legacyPrefix);
+        this.freeText = freeText;
+    }
+
+    /** The question line followed by one line per choice, or by a hint to type the answer. */
+    Component question(TriviaQuestion q, List<String> choices) {
+        TextComponent.Builder block = Component.text();
+        line(block, Component.text("Question: ", NamedTextColor.LIGHT_PURPLE), Component.text(q.question()));
+
+        if (freeText) {
+            block.append(Component.newline());
+            line(block, Component.text(isTrueFalse(choices) ? "  True or false? Answer in chat."
+                    : "  Type your answer in chat.", NamedTextColor.GRAY));
+            return block.build();
+        }
+        for (int i = 0; i < choices.size(); i++) {
+            block.append(Component.newline());
+            line(block, Component.text("  " + LETTERS[i] + ") ", NamedTextColor.GRAY)
+                    .append(Component.text(choices.get(i), NamedTextColor.WHITE)));
+        }
+        return block.build();
+    }
+
+    Component answer(TriviaQuestion q, List<String> choices) {
+        int idx = q.correctIndex();
+        String answer = choices.get(idx);
+        TextComponent.Builder block = Component.text();
+        line(block, Component.text("Answer: ", NamedTextColor.GREEN),
+                Component.text(freeText ? answer : LETTERS[idx] + ") " + answer));
+        return block.build();
+    }
+
+    private static boolean isTrueFalse(List<String> choices) {
+        return choices.size() == 2 && choices.contains("True") && choices.contains("False");
+    }
+
+    /** Announces the first correct answer of the round. */
+    Component winner(String playerName, long millis) {
+        TextComponent.Builder block = Component.text();
+        line(block, Component.text(playerName, NamedTextColor.GOLD)
+                .append(Component.text(" answered correctly in "
+                        + String.format(Locale.ROOT, "%.1f", millis / 1000.0) + "s!", NamedTextColor.GREEN)));
+        return block.build();
+    }
+
+    private void line(TextComponent.Builder block, Component... parts) {
+        // prefix and parts are siblings, so none inherits another's formatting; uncolored text
+        // shows in the chat default, as after a reset
+        block.append(prefix);
+        for (Component part : parts) block.append(part);
+    }
+}
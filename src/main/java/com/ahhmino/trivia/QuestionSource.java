@@ -0,0 +1,35 @@
+package com.ahhmino.trivia;
+
+/**
+ * Somewhere questions come from: OpenTriviaDB, another HTTP endpoint speaking its format, or a
+ * local question pack. The {@link QuestionFetcher} rotates between the configured sources by
+ * weight; a source only has to produce questions into the {@link QuestionFetcher.Batch} it is
+ * handed, which takes care of the store, the repeat window and the session's queue.
+ */
+interface QuestionSource {
+
+    String name();
+
+    /** Share of fetches this source gets relative to the others. */
+    int weight();
+
+    /** Whether fetched questions are also saved to the question store; local packs already are one. */
+    default boolean cached() {
+        return true;
+    }
+
+    /**
+     * Starts fetching up to {@code query.amount()} questions into {@code batch}. Must not block the
+     * caller; the source calls {@link QuestionFetcher.Batch#finish()} once it's done, whatever the
+     * outcome.
+     */
+    Handle fetch(String session, FetchQuery query, QuestionFetcher.Batch batch);
+
+    default void close() {
+    }
+
+    /** A fetch in progress. */
+    interface Handle {
+        void cancel();
+    }
+}
@@ -0,0 +1,474 @@
+package com.ahhmino.trivia;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Append-only on-disk question bank.
+ *
+ * <p>Questions live in {@code questions.dat} as length-prefixed records and are read back through a
+ * memory-mapped view of the file. {@code questions.idx} holds one fixed-size entry per record
+ * (offset, hash and filter metadata) so opening a large bank never has to decode the questions
+ * themselves. The index is only an accelerator: if it is missing or out of step with the data file
+ * it is rebuilt from the data file on open.
+ *
+ * <p>A mapped view addresses at most 2 GB, so the data file stops growing there: the append that
+ * would cross the limit fails once with an {@link IOException}, and later appends are skipped. The
+ * questions already stored are still served.
+ *
+ * <p>Only a bounded window of decoded {@link TriviaQuestion}s is kept on the heap. Each trivia
+ * session reads through its own {@link Selection}, a shuffled rotation over the stored questions
+ * matching that session's filter.
+ *
+ * <p>Appends come from the fetch threads and do their file writes under a separate writer lock;
+ * the store's monitor is only held to publish the new entry in memory, so the driver thread never
+ * waits on disk I/O to pick or serve a question.
+ */
+public final class QuestionStore implements Closeable {
+
+    private static final int DATA_MAGIC = 0x54515331; // "TQS1"
+    private static final int HEADER_SIZE = 8;         // magic + version
+    private static final int VERSION = 2;             // 2: index hashes are FingerprintIndex.of fingerprints
+    private static final int INDEX_ENTRY_SIZE = 20;   // offset(8) hash(8) category(2) difficulty(1) type(1)
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+    private static final long MAX_DATA_SIZE = Integer.MAX_VALUE; // largest mapping; keeps the (int) offsets exact
+
+    public static final byte DIFFICULTY_ANY = 0;
+    public static final byte TYPE_ANY = 0;
+
+    /** Which stored questions the loop may serve; zero fields match anything. */
+    public record Filter(int category, byte difficulty, byte type) {
+        boolean matches(int c, byte d, byte t) {
+            return (category == 0 || category == c)
+                    && (difficulty == DIFFICULTY_ANY || difficulty == d)
+                    && (type == TYPE_ANY || type == t);
+        }
+    }
+
+    private final FileChannel data;
+    private final FileChannel index;
+    private final int cacheSize;
+    private final long maxDataSize;
+
+    private final Object writeLock = new Object(); // file writes, dataSize, full and hashes
+    private volatile long dataSize;
+    private boolean full;
+    private MappedByteBuffer mapped;
+
+    // In-memory copy of the index
+    private int count;
+    private long[] offsets = new long[1024];
+    private short[] categories = new short[1024];
+    private byte[] difficulties = new byte[1024];
+    private byte[] types = new byte[1024];
+    private long[] fingerprints = new long[1024];
+    private final LongHashSet hashes = new LongHashSet(1024);
+
+    /** One session's rotation over the matching stored questions, served in shuffled order. */
+    public final class Selection {
+        private final Filter filter;
+        private int[] ids = new int[16];
+        private volatile int size; // written under the store's monitor, read without it
+        private int cursor;
+
+        private Selection(Filter filter) {
+            this.filter = filter;
+        }
+
+        public int size() {
+            return size;
+        }
+    }
+
+    private final List<Selection> selections = new ArrayList<>();
+
+    private final LinkedHashMap<Integer, TriviaQuestion> window;
+
+    private QuestionStore(FileChannel data, FileChannel index, int cacheSize, long maxDataSize) {
+        this.data = data;
+        this.index = index;
+        this.cacheSize = Math.max(1, cacheSize);
+        this.maxDataSize = Math.min(MAX_DATA_SIZE, maxDataSize);
+        this.window = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, TriviaQuestion> eldest) {
+                return size() > QuestionStore.this.cacheSize;
+            }
+        };
+    }
+
+    public static QuestionStore open(File folder, int cacheSize) throws IOException {
+        return open(folder, cacheSize, MAX_DATA_SIZE);
+    }
+
+    /** With a smaller data file limit, so tests needn't write 2 GB to reach it. */
+    static QuestionStore open(File folder, int cacheSize, long maxDataSize) throws IOException {
+        if (!folder.exists() && !folder.mkdirs()) {
+            throw new IOException("Could not create " + folder);
+        }
+        FileChannel data = FileChannel.open(new File(folder, "questions.dat").toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel index;
+        try {
+            index = FileChannel.open(new File(folder, "questions.idx").toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            data.close();
+            throw e;
+        }
+
+        QuestionStore store = new QuestionStore(data, index, cacheSize, maxDataSize);
+        try {
+            store.load();
+        } catch (IOException e) {
+            store.close();
+            throw e;
+        }
+        return store;
+    }
+
+    /* ------------------ Opening ------------------ */
+
+    private void load() throws IOException {
+        if (data.size() < HEADER_SIZE) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(DATA_MAGIC).putInt(VERSION).flip();
+            data.truncate(0);
+            data.write(header, 0);
+            index.truncate(0);
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            data.read(header, 0);
+            if (header.getInt(0) != DATA_MAGIC) {
+                throw new IOException("questions.dat is not a trivia question store");
+            }
+            if (header.getInt(4) < VERSION) {
+                // older index hashes used another normalization; re-derive them from the data
+                index.truncate(0);
+                data.write(ByteBuffer.allocate(4).putInt(VERSION).flip(), 4);
+            }
+        }
+        dataSize = data.size();
+        if (dataSize > MAX_DATA_SIZE) {
+            throw new IOException("questions.dat is larger than " + MAX_DATA_SIZE + " bytes and cannot be mapped");
+        }
+        remap();
+
+        if (!loadIndex()) {
+            rebuildIndex();
+        }
+    }
+
+    /** Loads questions.idx if it lines up exactly with the data file. */
+    private boolean loadIndex() throws IOException {
+        long size = index.size();
+        if (size % INDEX_ENTRY_SIZE != 0) return false;
+        int n = (int) (size / INDEX_ENTRY_SIZE);
+        if (n == 0) return dataSize == HEADER_SIZE;
+
+        MappedByteBuffer idx = index.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        long expected = HEADER_SIZE;
+        for (int i = 0; i < n; i++) {
+            int base = i * INDEX_ENTRY_SIZE;
+            long offset = idx.getLong(base);
+            if (offset != expected || offset + 4 > dataSize) {
+                count = 0;
+                hashes.clear();
+                return false;
+            }
+            int len = mapped.getInt((int) offset);
+            expected = offset + 4 + len;
+            addEntry(offset, idx.getLong(base + 8), idx.getShort(base + 16), idx.get(base + 18), idx.get(base + 19));
+        }
+        if (expected != dataSize) {
+            count = 0;
+            hashes.clear();
+            return false;
+        }
+        return true;
+    }
+
+    /** Re-derives the index by walking the data file, dropping a torn trailing record if present. */
+    private void rebuildIndex() throws IOException {
+        count = 0;
+        hashes.clear();
+        index.truncate(0);
+
+        long pos = HEADER_SIZE;
+        while (pos + 4 <= dataSize) {
+            int len = mapped.getInt((int) pos);
+            if (len < 4 || len > MAX_RECORD_SIZE || pos + 4 + len > dataSize) break;
+
+            TriviaQuestion q;
+            try {
+                q = decode(pos, 0);
+            } catch (IOException | RuntimeException e) {
+                break;
+            }
+            int base = (int) pos + 4;
+            short category = mapped.getShort(base);
+            byte difficulty = mapped.get(base + 2);
+            byte type = mapped.get(base + 3);
+            long hash = q.fingerprint();
+
+            addEntry(pos, hash, category, difficulty, type);
+            writeIndexEntry(pos, hash, category, difficulty, type);
+            pos += 4 + len;
+        }
+
+        if (pos != dataSize) {
+            data.truncate(pos);
+            dataSize = pos;
+            remap();
+        }
+    }
+
+    private void remap() throws IOException {
+        mapped = data.map(FileChannel.MapMode.READ_ONLY, 0, dataSize);
+    }
+
+    /* ------------------ Writing ------------------ */
+
+    /**
+     * Appends a question unless the same question text is already stored.
+     *
+     * @return true if the question was written
+     */
+    public boolean append(TriviaQuestion q, int category, byte difficulty, byte type) throws IOException {
+        synchronized (writeLock) {
+            long hash = q.fingerprint();
+            if (full || hashes.contains(hash)) return false;
+            long offset = write(q, category, difficulty, type);
+            if (offset < 0) return false;
+            writeIndexEntry(offset, hash, (short) category, difficulty, type);
+
+            synchronized (this) {
+                int id = count;
+                addEntry(offset, hash, (short) category, difficulty, type);
+                for (Selection s : selections) {
+                    // slot the newcomer somewhere in the unserved part of each matching rotation
+                    if (s.filter.matches(category, difficulty, type)) addToSelection(s, id);
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Writes the question's record at the end of the data file; its offset, or -1 if it is too
+     * large. Throws, and marks the store full, if it would take the file past its size limit.
+     */
+    private long write(TriviaQuestion q, int category, byte difficulty, byte type) throws IOException {
+        List<String> choices = q.choices();
+        int correct = q.correctIndex();
+
+        byte[] text = q.question().getBytes(StandardCharsets.UTF_8);
+        byte[][] encoded = new byte[choices.size()][];
+        int len = 4 + 2 + text.length + 1;
+        // correct answer is always stored first; choices are reshuffled on read
+        encoded[0] = choices.get(correct).getBytes(StandardCharsets.UTF_8);
+        for (int i = 0, j = 1; i < choices.size(); i++) {
+            if (i != correct) encoded[j++] = choices.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        for (byte[] c : encoded) len += 2 + c.length;
+        if (len > MAX_RECORD_SIZE) return -1;
+        if (dataSize + 4 + len > maxDataSize) {
+            full = true;
+            throw new IOException("questions.dat reached its size limit of " + maxDataSize
+                    + " bytes; new questions will no longer be stored");
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate(4 + len);
+        buf.putInt(len)
+                .putShort((short) category).put(difficulty).put(type)
+                .putShort((short) text.length).put(text)
+                .put((byte) encoded.length);
+        for (byte[] c : encoded) buf.putShort((short) c.length).put(c);
+        buf.flip();
+
+        long offset = dataSize;
+        while (buf.hasRemaining()) {
+            data.write(buf, offset + buf.position());
+        }
+        dataSize = offset + buf.limit();
+        return offset;
+    }
+
+    private void writeIndexEntry(long offset, long hash, short category, byte difficulty, byte type) throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE)
+                .putLong(offset).putLong(hash).putShort(category).put(difficulty).put(type)
+                .flip();
+        long pos = index.size();
+        while (entry.hasRemaining()) {
+            index.write(entry, pos + entry.position());
+        }
+    }
+
+    private void addEntry(long offset, long hash, short category, byte difficulty, byte type) {
+        if (count == offsets.length) {
+            int cap = count * 2;
+            offsets = Arrays.copyOf(offsets, cap);
+            categories = Arrays.copyOf(categories, cap);
+            difficulties = Arrays.copyOf(difficulties, cap);
+            types = Arrays.copyOf(types, cap);
+            fingerprints = Arrays.copyOf(fingerprints, cap);
+        }
+        offsets[count] = offset;
+        categories[count] = category;
+        difficulties[count] = difficulty;
+        types[count] = type;
+        fingerprints[count] = hash;
+        hashes.add(hash);
+        count++;
+    }
+
+    /* ------------------ Reading ------------------ */
+
+    /** Opens a shuffled rotation over the questions matching the filter; release it when done. */
+    public synchronized Selection select(Filter f) {
+        Selection s = new Selection(f);
+        s.ids = new int[Math.max(16, count)];
+        for (int i = 0; i < count; i++) {
+            if (f.matches(categories[i], difficulties[i], types[i])) s.ids[s.size++] = i;
+        }
+        shuffle(s);
+        selections.add(s);
+        return s;
+    }
+
+    public synchronized void release(Selection s) {
+        selections.remove(s);
+    }
+
+    /** Next stored question in the selection's rotation, or null if none match. */
+    public synchronized TriviaQuestion next(Selection s) throws IOException {
+        if (s.size == 0) return null;
+        if (s.cursor >= s.size) shuffle(s);
+        return get(s.ids[s.cursor++]);
+    }
+
+    private TriviaQuestion get(int id) throws IOException {
+        TriviaQuestion cached = window.get(id);
+        if (cached != null) return cached.reshuffled();
+
+        long offset = offsets[id];
+        if (offset + 4 > mapped.capacity()) {
+            remap();
+        }
+        TriviaQuestion q = decode(offset, fingerprints[id]);
+        window.put(id, q);
+        return q;
+    }
+
+    private TriviaQuestion decode(long offset, long fingerprint) throws IOException {
+        int pos = (int) offset + 4 + 4; // skip length and metadata
+
+        int qLen = Short.toUnsignedInt(mapped.getShort(pos));
+        pos += 2;
+        String question = readString(pos, qLen);
+        pos += qLen;
+
+        int n = Byte.toUnsignedInt(mapped.get(pos++));
+        List<String> choices = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            int len = Short.toUnsignedInt(mapped.getShort(pos));
+            pos += 2;
+            choices.add(readString(pos, len));
+            pos += len;
+        }
+        if (choices.isEmpty()) throw new IOException("Stored question at " + offset + " has no choices");
+
+        if (fingerprint == 0) fingerprint = FingerprintIndex.of(question);
+        return TriviaQuestion.shuffled(question, choices.get(0), choices.subList(1, n), fingerprint);
+    }
+
+    private String readString(int pos, int len) {
+        byte[] bytes = new byte[len];
+        mapped.get(pos, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void addToSelection(Selection s, int id) {
+        if (s.size == s.ids.length) {
+            s.ids = Arrays.copyOf(s.ids, s.size * 2);
+        }
+        int[] ids = s.ids;
+        int n = s.size + 1;
+        ids[n - 1] = id;
+        int lo = Math.min(s.cursor, n - 1);
+        int swap = lo + ThreadLocalRandom.current().nextInt(n - lo);
+        int tmp = ids[swap];
+        ids[swap] = ids[n - 1];
+        ids[n - 1] = tmp;
+        s.size = n;
+    }
+
+    private static void shuffle(Selection s) {
+        Random rnd = ThreadLocalRandom.current();
+        int[] ids = s.ids;
+        for (int i = s.size - 1; i > 0; i--) {
+            int j = rnd.nextInt(i + 1);
+            int tmp = ids[i];
+            ids[i] = ids[j];
+            ids[j] = tmp;
+        }
+        s.cursor = 0;
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    /* ------------------ Helpers ------------------ */
+
+    static byte difficultyCode(String difficulty) {
+        if (difficulty == null) return DIFFICULTY_ANY;
+        return switch (difficulty.toLowerCase(Locale.ROOT)) {
+            case "easy" -> 1;
+            case "medium" -> 2;
+            case "hard" -> 3;
+            default -> DIFFICULTY_ANY;
+        };
+    }
+
+    static byte typeCode(String type) {
+        if (type == null) return TYPE_ANY;
+        return switch (type.toLowerCase(Locale.ROOT)) {
+            case "multiple" -> 1;
+            case "boolean" -> 2;
+            default -> TYPE_ANY;
+        };
+    }
+
+    static int categoryCode(String category) {
+        if (category == null || category.isBlank()) return 0;
+        try {
+            return Integer.parseInt(category.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            try {
+                data.force(false);
+                index.force(false);
+            } finally {
+                try {
+                    data.close();
+                } finally {
+                    index.close();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.ahhmino.trivia;
+
+import net.kyori.adventure.audience.Audience;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Who a session talks to and accepts answers from: everyone, one world, or holders of a permission.
+ * Spelled in config as {@code all}, {@code world:<name>} or {@code permission:<node>}.
+ */
+final class SessionAudience {
+
+    enum Kind { ALL, WORLD, PERMISSION }
+
+    private final Kind kind;
+    private final String value;
+
+    private SessionAudience(Kind kind, String value) {
+        this.kind = kind;
+        this.value = value;
+    }
+
+    static SessionAudience parse(String spec) {
+        String s = spec == null ? "" : spec.trim();
+        int colon = s.indexOf(':');
+        if (colon > 0) {
+            String kind = s.substring(0, colon).toLowerCase(Locale.ROOT);
+            String value = s.substring(colon + 1).trim();
+            if (!value.isEmpty()) {
+                switch (kind) {
+                    case "world" -> { return new SessionAudience(Kind.WORLD, value); }
+                    case "permission", "perm" -> { return new SessionAudience(Kind.PERMISSION, value); }
+                    default -> { }
+                }
+            }
+        }
+        return new SessionAudience(Kind.ALL, "");
+    }
+
+    /** Whether answers from this player count. Safe to call from the async chat thread. */
+    boolean includes(Player p) {
+        return switch (kind) {
+            case ALL -> true;
+            case WORLD -> p.getWorld().getName().equals(value);
+            case PERMISSION -> p.hasPermission(value);
+        };
+    }
+
+    /**
+     * Driver thread: is anyone around to play? Worlds are matched through the online player list
+     * rather than {@code World#getPlayers}, which Folia only allows from the world's own regions.
+     */
+    boolean hasMembers() {
+        if (kind == Kind.ALL) return !Bukkit.getOnlinePlayers().isEmpty();
+        for (Player p : Bukkit.getOnlinePlayers()) {
+            if (includes(p)) return true;
+        }
+        return false;
+    }
+
+    /** Driver thread: the recipients of a broadcast right now, always including the console. */
+    Audience audience() {
+        if (kind == Kind.ALL) return Bukkit.getServer();
+        List<Audience> members = new ArrayList<>();
+        for (Player p : Bukkit.getOnlinePlayers()) {
+            if (includes(p)) members.add(p);
+        }
+        members.add(Bukkit.getConsoleSender());
+        return Audience.audience(members);
+    }
+
+    @Override
+    public String toString() {
+        return kind == Kind.ALL ? "all" : kind.name().toLowerCase(Locale.ROOT) + ":" + value;
+    }
+}
@@ -0,0 +1,123 @@
+package com.ahhmino.trivia;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Settings for one trivia session. Named sessions live under {@code sessions.<name>} and fall back
+ * to the top-level keys for anything they don't set; with no named sessions the top-level keys
+ * describe a single "global" session.
+ *
+ * <p>A session asks from one or more weighted {@link Category categories}. Without a
+ * {@code categories} section it has a single one built from the top-level query keys.
+ */
+record SessionConfig(
+        String name,
+        SessionAudience audience,
+        List<Category> categories,
+        String chatPrefix,
+        int answerDelayTicks,
+        int betweenQuestionsDelayTicks,
+        int fetchBatchSize,
+        boolean adaptivePrefetch,
+        int prefetchRefillSeconds,
+        boolean freeText,
+        int maxTypos,
+        int attemptsPerQuestion,
+        double attemptsPerSecond,
+        int attemptBurst,
+        double targetSolveRate
+) {
+
+    static final String GLOBAL = "global";
+
+    /**
+     * One stream of questions within a session, with its own queue and fetches.
+     *
+     * @param key    what the fetch layer tracks it by (tokens, backoff): the session name, plus the
+     *               category's name when the session has several
+     * @param weight its share of the questions asked, relative to the session's other categories
+     */
+    record Category(String key, FetchQuery query, int weight) {
+    }
+
+    /**
+     * @param section the session's own section, or null for the global session
+     * @param root    the top-level config the session inherits from
+     */
+    static SessionConfig from(String name, ConfigurationSection section, ConfigurationSection root) {
+        Lookup cfg = new Lookup(section, new Lookup(root, null));
+
+        List<Category> categories = new ArrayList<>();
+        ConfigurationSection weighted = cfg.section("categories");
+        if (weighted != null) {
+            for (String key : weighted.getKeys(false)) {
+                ConfigurationSection c = weighted.getConfigurationSection(key);
+                if (c == null) continue;
+                int weight = Math.max(0, c.getInt("weight", 1));
+                if (weight > 0) categories.add(new Category(name + "/" + key, query(new Lookup(c, cfg)), weight));
+            }
+        }
+        if (categories.isEmpty()) categories.add(new Category(name, query(cfg), 1));
+
+        boolean freeText = cfg.string("answers.mode", "choices").equalsIgnoreCase("text");
+        return new SessionConfig(
+                name,
+                SessionAudience.parse(cfg.string("audience", "all")),
+                List.copyOf(categories),
+                cfg.string("chat_prefix", "&dTrivia:&r "),
+                Math.max(1, cfg.integer("answer_delay_seconds", 15)) * 20,
+                Math.max(0, cfg.integer("between_questions_delay_seconds", 10)) * 20,
+                Math.max(5, cfg.integer("fetch_batch_size", 50)),
+                cfg.bool("prefetch.adaptive", true),
+                Math.max(1, cfg.integer("prefetch.refill_seconds", 120)),
+                freeText,
+                Math.max(0, cfg.integer("answers.max_typos", 2)),
+                Math.max(0, cfg.integer("answers.throttle.attempts_per_question", freeText ? 3 : 1)),
+                Math.max(0, cfg.decimal("answers.throttle.per_second", 0)),
+                Math.max(1, cfg.integer("answers.throttle.burst", 3)),
+                Math.max(0, Math.min(1, cfg.decimal("selection.target_solve_rate", 0.6))));
+    }
+
+    private static FetchQuery query(Lookup cfg) {
+        return new FetchQuery(
+                cfg.string("category", ""),
+                cfg.string("difficulty", ""),
+                cfg.string("type", ""),
+                Math.max(1, cfg.integer("amount", 50)),
+                cfg.string("encode", "base64"));
+    }
+
+    /** Reads a key from the innermost section that sets it: category, then session, then top level. */
+    private record Lookup(ConfigurationSection section, Lookup parent) {
+        String string(String key, String def) {
+            if (section != null && section.contains(key)) {
+                return Objects.requireNonNullElse(section.getString(key), def);
+            }
+            return parent != null ? parent.string(key, def) : def;
+        }
+
+        int integer(String key, int def) {
+            if (section != null && section.contains(key)) return section.getInt(key, def);
+            return parent != null ? parent.integer(key, def) : def;
+        }
+
+        double decimal(String key, double def) {
+            if (section != null && section.contains(key)) return section.getDouble(key, def);
+            return parent != null ? parent.decimal(key, def) : def;
+        }
+
+        boolean bool(String key, boolean def) {
+            if (section != null && section.contains(key)) return section.getBoolean(key, def);
+            return parent != null ? parent.bool(key, def) : def;
+        }
+
+        ConfigurationSection section(String key) {
+            if (section != null && section.isConfigurationSection(key)) return section.getConfigurationSection(key);
+            return parent != null ? parent.section(key) : null;
+        }
+    }
+}
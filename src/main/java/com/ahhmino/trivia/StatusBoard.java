@@ -0,0 +1,173 @@
+package com.ahhmino.trivia;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What the status endpoint serves. Once a tick the driver thread checks whether anything shown
+ * has changed and only then publishes an immutable snapshot; request threads read nothing but the
+ * latest published {@link Document}, never a session, Bukkit or the main thread. A document is
+ * serialized once, by whichever request first needs it, and its ETag is its version, so polling
+ * something unchanged costs a volatile read and a 304.
+ */
+final class StatusBoard {
+
+    /** The question on screen, or the last one with its answer until the next is asked. Times are epoch millis. */
+    record QuestionView(long round, String text, List<String> choices, long shownAt, long endsAt,
+                        String answer, String winner, long winnerMillis) {}
+
+    record SessionView(String name, String audience, String phase, long round, int queued,
+                       long nextQuestionAt, QuestionView question) {}
+
+    /** A published snapshot; its JSON is built on first use and then reused. */
+    static final class Document {
+        final String etag;
+        private final Content content;
+        private volatile byte[] body;
+
+        private Document(String etag, Content content) {
+            this.etag = etag;
+            this.content = content;
+        }
+
+        byte[] body() {
+            byte[] b = body;
+            if (b == null) {
+                StringWriter out = new StringWriter(1024);
+                try (JsonWriter json = new JsonWriter(out)) {
+                    content.write(json);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                body = b = out.toString().getBytes(StandardCharsets.UTF_8);
+            }
+            return b;
+        }
+    }
+
+    private interface Content {
+        void write(JsonWriter json) throws IOException;
+    }
+
+    private final String instance = Long.toHexString(System.currentTimeMillis()); // ETags stay unique across restarts
+    private volatile Document status;
+    private volatile Document leaderboard;
+
+    // Driver thread: what the current documents were built from
+    private long version;
+    private List<TriviaSession> publishedSessions;
+    private boolean publishedEnabled;
+    private int publishedOnline = -1;
+    private long publishedStandings = Long.MIN_VALUE;
+
+    Document status() {
+        return status;
+    }
+
+    Document leaderboard() {
+        return leaderboard;
+    }
+
+    /** Driver thread, every tick: republishes whichever documents have changed. */
+    void update(List<TriviaSession> sessions, boolean enabled, int online, Leaderboard lb, long now) {
+        boolean changed = sessions != publishedSessions || enabled != publishedEnabled || online != publishedOnline;
+        for (TriviaSession s : sessions) changed |= s.statusChanged();
+        if (changed) {
+            publishedSessions = sessions;
+            publishedEnabled = enabled;
+            publishedOnline = online;
+            List<SessionView> views = new ArrayList<>(sessions.size());
+            for (TriviaSession s : sessions) views.add(s.statusView(now));
+            List<SessionView> snapshot = List.copyOf(views);
+            long updated = System.currentTimeMillis();
+            status = new Document(etag(), json -> writeStatus(json, enabled, online, snapshot, updated));
+        }
+
+        long standings = lb != null ? lb.version() : -1;
+        if (standings != publishedStandings) {
+            publishedStandings = standings;
+            List<Leaderboard.Standing> top = lb != null ? lb.top(lb.topSize()) : null;
+            long updated = System.currentTimeMillis();
+            leaderboard = new Document(etag(), json -> writeLeaderboard(json, top, updated));
+        }
+    }
+
+    private String etag() {
+        return "\"" + instance + "-" + ++version + "\"";
+    }
+
+    /* ------------------ JSON ------------------ */
+
+    private static void writeStatus(JsonWriter json, boolean enabled, int online, List<SessionView> sessions, long updated)
+            throws IOException {
+        json.beginObject();
+        json.name("enabled").value(enabled);
+        json.name("players_online").value(online);
+        json.name("updated").value(updated);
+        json.name("sessions").beginArray();
+        for (SessionView s : sessions) {
+            json.beginObject();
+            json.name("name").value(s.name());
+            json.name("audience").value(s.audience());
+            json.name("phase").value(s.phase());
+            json.name("round").value(s.round());
+            json.name("queued").value(s.queued());
+            if (s.nextQuestionAt() >= 0) json.name("next_question_at").value(s.nextQuestionAt());
+            QuestionView q = s.question();
+            if (q != null) {
+                json.name("question").beginObject();
+                json.name("round").value(q.round());
+                json.name("text").value(q.text());
+                if (q.choices() != null) {
+                    json.name("choices").beginArray();
+                    for (String c : q.choices()) json.value(c);
+                    json.endArray();
+                }
+                json.name("shown_at").value(q.shownAt());
+                if (q.endsAt() >= 0) json.name("ends_at").value(q.endsAt());
+                if (q.answer() != null) json.name("answer").value(q.answer());
+                if (q.winner() != null) {
+                    json.name("winner").beginObject();
+                    json.name("name").value(q.winner());
+                    json.name("millis").value(q.winnerMillis());
+                    json.endObject();
+                }
+                json.endObject();
+            }
+            json.endObject();
+        }
+        json.endArray();
+        json.endObject();
+    }
+
+    /** {@code top} is null when the leaderboard is disabled. */
+    private static void writeLeaderboard(JsonWriter json, List<Leaderboard.Standing> top, long updated) throws IOException {
+        json.beginObject();
+        json.name("enabled").value(top != null);
+        json.name("updated").value(updated);
+        if (top != null) {
+            json.name("top").beginArray();
+            int rank = 1;
+            for (Leaderboard.Standing s : top) {
+                json.beginObject();
+                json.name("rank").value(rank++);
+                json.name("uuid").value(s.uuid().toString());
+                json.name("name").value(s.name());
+                json.name("correct").value(s.correct());
+                json.name("streak").value(s.streak());
+                json.name("best_streak").value(s.bestStreak());
+                json.name("average_ms").value(s.averageMillis());
+                json.name("fastest_ms").value(s.fastestMillis());
+                json.endObject();
+            }
+            json.endArray();
+        }
+        json.endObject();
+    }
+}
@@ -0,0 +1,90 @@
+package com.ahhmino.trivia;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Serves the {@link StatusBoard} as read-only JSON: {@code GET /status} for the sessions and their
+ * live questions, {@code GET /leaderboard} for the top standings. Each response carries its
+ * snapshot's ETag, and a request whose {@code If-None-Match} still matches gets an empty 304.
+ * Requests run on virtual threads and only ever read published snapshots.
+ */
+final class StatusServer {
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private StatusServer(HttpServer server) {
+        this.server = server;
+    }
+
+    static StatusServer start(InetSocketAddress bind, StatusBoard board) throws IOException {
+        HttpServer server = HttpServer.create(bind, 0);
+        StatusServer status = new StatusServer(server);
+        server.createContext("/status", exchange -> status.handle(exchange, "/status", board::status));
+        server.createContext("/leaderboard", exchange -> status.handle(exchange, "/leaderboard", board::leaderboard));
+        server.setExecutor(status.executor);
+        server.start();
+        return status;
+    }
+
+    private void handle(HttpExchange exchange, String path, Supplier<StatusBoard.Document> document) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            if (!exchange.getRequestURI().getPath().equals(path)) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            StatusBoard.Document doc = document.get();
+            if (doc == null) { // nothing published until the first tick
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            exchange.getResponseHeaders().set("ETag", doc.etag);
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            if (matches(exchange.getRequestHeaders().getFirst("If-None-Match"), doc.etag)) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            byte[] bytes = doc.body();
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    /** Whether an {@code If-None-Match} header names the ETag (or is {@code *}); weak validators count. */
+    private static boolean matches(String header, String etag) {
+        if (header == null) return false;
+        for (String tag : header.split(",")) {
+            String t = tag.trim();
+            if (t.startsWith("W/")) t = t.substring(2);
+            if (t.equals(etag) || t.equals("*")) return true;
+        }
+        return false;
+    }
+
+    int port() {
+        return server.getAddress().getPort();
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
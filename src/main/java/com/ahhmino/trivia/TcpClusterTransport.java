@@ -0,0 +1,227 @@
+package com.ahhmino.trivia;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.logging.Logger;
+
+/**
+ * A full mesh of plain TCP connections: every node listens on its bind address and dials each
+ * configured peer. Messages go out only on the connections a node dialed and come in only on the
+ * ones it accepted, so every pair of nodes shares two one-way streams and nothing is delivered
+ * twice. Frames are a 4-byte length and the message; the first frame on a connection is the shared
+ * secret, and connections that get it wrong are closed.
+ *
+ * <p>Each peer has a bounded send queue drained by its own virtual thread, which redials every
+ * few seconds while the peer is down. Messages are only queued while a peer is connected, and a
+ * full queue drops them, so a slow or dead peer never holds up the caller.
+ */
+final class TcpClusterTransport implements ClusterTransport {
+
+    static final int MAX_FRAME = 1 << 20;
+    private static final int QUEUE_LIMIT = 1024;
+    private static final int CONNECT_TIMEOUT_MILLIS = 3_000;
+    private static final long RECONNECT_MILLIS = 5_000;
+
+    private final Logger logger;
+    private final InetSocketAddress bind;
+    private final byte[] secret;
+    private final long reconnectMillis;
+    private final List<Peer> peers = new ArrayList<>();
+    private final Set<Socket> inbound = ConcurrentHashMap.newKeySet();
+    private final List<Thread> threads = new ArrayList<>();
+    private ServerSocket server;
+    private volatile boolean closed;
+
+    TcpClusterTransport(Logger logger, InetSocketAddress bind, List<InetSocketAddress> peers, String secret) {
+        this(logger, bind, peers, secret, RECONNECT_MILLIS);
+    }
+
+    /** With the redial interval given, so tests don't wait out the default. */
+    TcpClusterTransport(Logger logger, InetSocketAddress bind, List<InetSocketAddress> peers, String secret, long reconnectMillis) {
+        this.logger = logger;
+        this.bind = bind;
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        this.reconnectMillis = reconnectMillis;
+        for (InetSocketAddress address : peers) this.peers.add(new Peer(address));
+    }
+
+    /** Parses {@code host:port}, or {@code :port} / {@code port} for all interfaces. */
+    static InetSocketAddress address(String s) {
+        int colon = s.lastIndexOf(':');
+        String host = colon > 0 ? s.substring(0, colon).trim() : "";
+        int port = Integer.parseInt(s.substring(colon + 1).trim());
+        return host.isEmpty() ? new InetSocketAddress(port) : new InetSocketAddress(host, port);
+    }
+
+    @Override
+    public void start(BiConsumer<SocketAddress, byte[]> receiver) throws IOException {
+        server = new ServerSocket();
+        server.setReuseAddress(true);
+        try {
+            server.bind(bind);
+        } catch (IOException e) {
+            server.close();
+            throw e;
+        }
+        threads.add(Thread.ofVirtual().name("trivia-cluster-accept").start(() -> accept(receiver)));
+        for (Peer peer : peers) {
+            threads.add(Thread.ofVirtual().name("trivia-cluster-" + peer.address).start(peer::run));
+        }
+    }
+
+    @Override
+    public void broadcast(byte[] message) {
+        for (Peer peer : peers) peer.send(message);
+    }
+
+    @Override
+    public String describe() {
+        int connected = 0;
+        for (Peer peer : peers) {
+            if (peer.connected) connected++;
+        }
+        return "tcp " + bind.getHostString() + ":" + bind.getPort() + ", peers " + connected + "/" + peers.size()
+                + " connected, " + inbound.size() + " inbound";
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        closeQuietly(server);
+        for (Socket s : inbound) closeQuietly(s);
+        for (Peer peer : peers) closeQuietly(peer.socket);
+        for (Thread t : threads) t.interrupt();
+    }
+
+    /* ------------------ Inbound ------------------ */
+
+    private void accept(BiConsumer<SocketAddress, byte[]> receiver) {
+        while (!closed) {
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (IOException e) {
+                if (!closed) logger.warning("Cluster listener stopped: " + e.getMessage());
+                return;
+            }
+            inbound.add(socket);
+            Thread.ofVirtual().name("trivia-cluster-in").start(() -> read(socket, receiver));
+        }
+    }
+
+    private void read(Socket socket, BiConsumer<SocketAddress, byte[]> receiver) {
+        try (socket; DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+            // A first frame longer than the secret can't be it; refuse it before allocating anything
+            int len = in.readInt();
+            if (len < 0 || len > secret.length || !MessageDigest.isEqual(in.readNBytes(len), secret)) {
+                logger.warning("Rejected cluster connection from " + socket.getRemoteSocketAddress() + ": wrong secret.");
+                return;
+            }
+            SocketAddress from = socket.getRemoteSocketAddress();
+            while (!closed) receiver.accept(from, readFrame(in));
+        } catch (EOFException e) {
+            // peer closed its end
+        } catch (IOException e) {
+            if (!closed) logger.fine("Cluster connection from " + socket.getRemoteSocketAddress() + " lost: " + e.getMessage());
+        } finally {
+            inbound.remove(socket);
+        }
+    }
+
+    private static byte[] readFrame(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len < 0 || len > MAX_FRAME) throw new IOException("bad frame length " + len);
+        byte[] frame = new byte[len];
+        in.readFully(frame);
+        return frame;
+    }
+
+    /* ------------------ Outbound ------------------ */
+
+    private final class Peer {
+        final InetSocketAddress address;
+        final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(QUEUE_LIMIT);
+        volatile boolean connected;
+        volatile Socket socket;
+
+        Peer(InetSocketAddress address) {
+            this.address = address;
+        }
+
+        void send(byte[] message) {
+            if (connected && !queue.offer(message)) {
+                logger.fine("Cluster send queue to " + address + " is full; dropping a message.");
+            }
+        }
+
+        /** Dials, drains the queue until the connection fails, then waits and dials again. */
+        void run() {
+            boolean warned = false;
+            while (!closed) {
+                try (Socket s = new Socket()) {
+                    socket = s;
+                    s.connect(address, CONNECT_TIMEOUT_MILLIS);
+                    s.setTcpNoDelay(true);
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+                    writeFrame(out, secret);
+                    out.flush();
+                    queue.clear();
+                    connected = true;
+                    warned = false;
+                    logger.info("Connected to cluster peer " + address + ".");
+                    while (!closed) {
+                        writeFrame(out, queue.take());
+                        byte[] more;
+                        while ((more = queue.poll()) != null) writeFrame(out, more);
+                        out.flush();
+                    }
+                } catch (IOException e) {
+                    if (!closed && !warned) {
+                        logger.warning("Cluster peer " + address + " unreachable (" + e.getMessage()
+                                + "); retrying every " + reconnectMillis / 1000 + "s.");
+                        warned = true;
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                } finally {
+                    connected = false;
+                }
+                try {
+                    Thread.sleep(reconnectMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void writeFrame(DataOutputStream out, byte[] frame) throws IOException {
+        out.writeInt(frame.length);
+        out.write(frame);
+    }
+
+    private static void closeQuietly(AutoCloseable c) {
+        if (c == null) return;
+        try {
+            c.close();
+        } catch (Exception ignored) {
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.ahhmino.trivia;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free token bucket kept as a single "theoretical arrival time" (the GCRA form): each
+ * permit pushes the time forward by one interval, and a caller waits for whatever is beyond the
+ * allowed burst. Callers reserve first and sleep afterwards, so permits are handed out in order.
+ */
+final class TokenBucket {
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLong tat = new AtomicLong(System.nanoTime());
+
+    /** Allows {@code burst} immediate permits, then one per {@code interval}. */
+    TokenBucket(int burst, long interval, TimeUnit unit) {
+        this.intervalNanos = Math.max(1, unit.toNanos(interval));
+        this.burstNanos = (long) Math.max(1, burst) * intervalNanos;
+    }
+
+    /** A bucket with a new interval that carries on from the permits {@code previous} has handed out. */
+    TokenBucket(TokenBucket previous, long interval, TimeUnit unit) {
+        this((int) (previous.burstNanos / previous.intervalNanos), interval, unit);
+        tat.set(previous.tat.get());
+    }
+
+    long intervalNanos() {
+        return intervalNanos;
+    }
+
+    /** Takes one permit; returns how many nanoseconds the caller must wait before using it. */
+    long reserve() {
+        long now = System.nanoTime();
+        while (true) {
+            long current = tat.get();
+            long start = current - now > 0 ? current : now;
+            long next = start + intervalNanos;
+            if (tat.compareAndSet(current, next)) {
+                return Math.max(0, next - burstNanos - now);
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.ahhmino.trivia;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms for the fetch layer and the driver thread. Everything is a
+ * {@link LongAdder} or a {@link Histogram}, so recording costs a few uncontended increments and
+ * never locks or allocates; the work of summarising happens only when someone asks.
+ */
+final class TriviaMetrics {
+
+    private static final String[] CODE_LABELS = {"0", "1", "2", "3", "4", "5", "other"};
+
+    // Fetch layer (fetch and parse threads)
+    final Histogram fetchLatency = new Histogram(); // request sent -> response headers, ns
+    final Histogram parseTime = new Histogram();    // response body streamed and parsed, ns
+    final LongAdder fetchErrors = new LongAdder();  // network errors and non-200 statuses
+    private final LongAdder[] responseCodes = new LongAdder[CODE_LABELS.length];
+    final LongAdder questionsFetched = new LongAdder();
+    final LongAdder questionsDuplicate = new LongAdder(); // repeats caught at parse time or dequeue
+    final LongAdder questionsDropped = new LongAdder();   // parsed for a fetch that was superseded
+
+    // Driver thread
+    final Histogram tickTime = new Histogram();      // one tick of every session, ns
+    final Histogram broadcastTime = new Histogram(); // one broadcast to a session's audience, ns
+
+    TriviaMetrics() {
+        for (int i = 0; i < responseCodes.length; i++) responseCodes[i] = new LongAdder();
+    }
+
+    void responseCode(int code) {
+        responseCodes[code >= 0 && code < CODE_LABELS.length - 1 ? code : CODE_LABELS.length - 1].increment();
+    }
+
+    /* ------------------ Chat Summary ------------------ */
+
+    /** Human-readable lines for {@code /trivia metrics}. */
+    String[] summary(Map<String, Integer> queueDepths) {
+        StringBuilder codes = new StringBuilder();
+        for (int i = 0; i < CODE_LABELS.length; i++) {
+            long n = responseCodes[i].sum();
+            if (n == 0) continue;
+            if (!codes.isEmpty()) codes.append(' ');
+            codes.append(CODE_LABELS[i]).append('=').append(n);
+        }
+        StringBuilder depths = new StringBuilder();
+        for (Map.Entry<String, Integer> e : queueDepths.entrySet()) {
+            if (!depths.isEmpty()) depths.append(", ");
+            depths.append(e.getKey()).append('=').append(e.getValue());
+        }
+        return new String[]{
+                "fetch latency: " + latency(fetchLatency.snapshot(), 1_000_000, "ms")
+                        + " | errors " + fetchErrors.sum(),
+                "parse time: " + latency(parseTime.snapshot(), 1_000_000, "ms"),
+                "response codes: " + (codes.isEmpty() ? "none yet" : codes),
+                "questions: fetched " + questionsFetched.sum() + ", duplicates " + questionsDuplicate.sum()
+                        + ", dropped " + questionsDropped.sum(),
+                "queue depth: " + depths,
+                "main thread per tick: " + latency(tickTime.snapshot(), 1_000, "µs"),
+                "broadcast: " + latency(broadcastTime.snapshot(), 1_000, "µs")
+        };
+    }
+
+    private static String latency(Histogram.Snapshot s, double unit, String suffix) {
+        if (s.count() == 0) return "no samples";
+        return String.format(Locale.ROOT, "p50 %.1f%s, p99 %.1f%s, max %.1f%s (n=%d)",
+                s.quantile(0.5) / unit, suffix, s.quantile(0.99) / unit, suffix, s.max() / unit, suffix, s.count());
+    }
+
+    /* ------------------ Prometheus ------------------ */
+
+    /** Everything in the Prometheus text exposition format (0.0.4). */
+    String prometheus(Map<String, Integer> queueDepths) {
+        StringBuilder out = new StringBuilder(4096);
+        histogram(out, "trivia_fetch_latency_seconds", "Time from sending a question request to its response headers.", fetchLatency);
+        histogram(out, "trivia_parse_seconds", "Time spent streaming and parsing one response body.", parseTime);
+        histogram(out, "trivia_tick_seconds", "Main-thread time per driver tick across all sessions.", tickTime);
+        histogram(out, "trivia_broadcast_seconds", "Main-thread time per broadcast to a session's audience.", broadcastTime);
+
+        counter(out, "trivia_fetch_errors_total", "Question requests that failed at the network or HTTP level.", fetchErrors.sum());
+        out.append("# HELP trivia_response_codes_total OpenTriviaDB-format response codes received.\n")
+                .append("# TYPE trivia_response_codes_total counter\n");
+        for (int i = 0; i < CODE_LABELS.length; i++) {
+            out.append("trivia_response_codes_total{code=\"").append(CODE_LABELS[i]).append("\"} ")
+                    .append(responseCodes[i].sum()).append('\n');
+        }
+        counter(out, "trivia_questions_fetched_total", "Questions delivered to a session queue.", questionsFetched.sum());
+        counter(out, "trivia_questions_duplicate_total", "Questions skipped as repeats.", questionsDuplicate.sum());
+        counter(out, "trivia_questions_dropped_total", "Questions discarded because their fetch was superseded.", questionsDropped.sum());
+
+        out.append("# HELP trivia_queue_depth Questions waiting in a session's queue.\n")
+                .append("# TYPE trivia_queue_depth gauge\n");
+        for (Map.Entry<String, Integer> e : queueDepths.entrySet()) {
+            out.append("trivia_queue_depth{session=\"").append(escape(e.getKey())).append("\"} ")
+                    .append(e.getValue()).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n')
+                .append("# TYPE ").append(name).append(" counter\n")
+                .append(name).append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Exposes nanosecond samples as seconds, with a bucket at every other power of two from ~1µs to
+     * ~69s. Each {@code le} is a power of two less 1ns, where the histogram's own buckets end, so the
+     * counts are exact.
+     */
+    private static void histogram(StringBuilder out, String name, String help, Histogram h) {
+        Histogram.Snapshot s = h.snapshot();
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n')
+                .append("# TYPE ").append(name).append(" histogram\n");
+        for (int exp = 10; exp <= 36; exp += 2) {
+            long bound = (1L << exp) - 1;
+            out.append(name).append("_bucket{le=\"")
+                    .append(String.format(Locale.ROOT, "%.9g", bound / 1e9)).append("\"} ")
+                    .append(s.countAtMost(bound)).append('\n');
+        }
+        out.append(name).append("_bucket{le=\"+Inf\"} ").append(s.count()).append('\n')
+                .append(name).append("_sum ").append(String.format(Locale.ROOT, "%.9f", s.sum() / 1e9)).append('\n')
+                .append(name).append("_count ").append(s.count()).append('\n');
+    }
+
+    private static String escape(String label) {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
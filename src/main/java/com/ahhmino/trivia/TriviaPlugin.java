@@ -1,51 +1,60 @@
 package com.ahhmino.trivia;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import io.papermc.paper.event.player.AsyncChatEvent;
+import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabExecutor;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
-import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.plugin.java.JavaPlugin;
 
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.nio.charset.StandardCharsets;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ThreadLocalRandom;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.Base64;
 
 public final class TriviaPlugin extends JavaPlugin implements TabExecutor, Listener {
 
-    private final HttpClient http = HttpClient.newHttpClient();
-    private final Deque<TriviaQuestion> queue = new ArrayDeque<>();
-    private final AtomicBoolean fetching = new AtomicBoolean(false);
+    private QuestionStore store; // null if disabled or failed to open
+    private FingerprintIndex recent; // null if repeat suppression is off or failed to open
+    private QuestionFetcher fetcher;
+    private volatile Leaderboard leaderboard; // null if disabled or failed to open
+    private volatile QuestionStats questionStats; // null if disabled or failed to open
+    private volatile Journal journal; // null if disabled or failed to open
+    private final TriviaMetrics metrics = new TriviaMetrics();
+    private MetricsServer metricsServer; // null unless metrics.http.enabled
+    private StatusBoard statusBoard; // null unless status.http.enabled
+    private StatusServer statusServer;
+    private ClusterNode cluster; // null unless cluster.enabled
 
-    private String chatPrefix;
-    private int answerDelayTicks;
-    private int betweenQuestionsDelayTicks;
-    private int fetchBatchSize;
     private boolean triviaEnabled;
+    private volatile boolean answersEnabled;
+    private volatile boolean earlyReveal;
+    private volatile Map<String, List<String>> aliases = Map.of(); // answers.aliases, by normalized form
 
-    // Loop control
-    private boolean cycleActive = false;
-    private int loopGeneration = 0; // increments when loop starts/stops/restarts
+    // Session engine: one repeating task drives every session, on the main or global region thread
+    private volatile List<TriviaSession> sessions = List.of(); // read by the async chat threads
+    private TriviaScheduler scheduler;
+    private long ticks;
 
     @Override
     public void onEnable() {
         saveDefaultConfig();
+        openStore();
+        openRecent();
+        openLeaderboard();
+        openQuestionStats();
+        openJournal();
+        fetcher = new QuestionFetcher(getLogger(), store, recent, metrics);
+        scheduler = TriviaScheduler.create(this);
         loadSettings(getConfig());
 
         if (getCommand("trivia") != null) {
@@ -56,31 +65,82 @@ public final class TriviaPlugin extends JavaPlugin implements TabExecutor, Liste
         // Listen for first-player-join so we can resume trivia when people come back
         Bukkit.getPluginManager().registerEvents(this, this);
 
-        // Initial fetch + loop start if enabled
-        fetchQuestionsAsync().thenRun(() -> {
-            if (triviaEnabled) startLoopIfNeeded();
-        });
-
-        getLogger().info("Trivia loaded; start_enabled=" + triviaEnabled);
+        // Stored questions can be served straight away; sessions fetch in the background as they start
+        restartSessions(true);
+        scheduler.startDriver(this::tickSessions);
+        startMetricsServer();
+        startStatusServer();
+        startCluster();
+
+        getLogger().info("Trivia loaded; start_enabled=" + triviaEnabled
+                + (TriviaScheduler.isFolia() ? "; folia" : "")
+                + "; sessions=" + sessions.size()
+                + (store != null ? "; stored questions=" + store.size() : ""));
     }
 
     @Override
     public void onDisable() {
-        stopLoop();
-        queue.clear();
+        if (scheduler != null) scheduler.stopDriver();
+        stopMetricsServer();
+        stopStatusServer();
+        stopCluster();
+        for (TriviaSession s : sessions) s.close();
+        sessions = List.of();
+        if (fetcher != null) fetcher.close();
+        closeStore();
+        closeRecent();
+        if (leaderboard != null) {
+            leaderboard.close(5000);
+            leaderboard = null;
+        }
+        if (questionStats != null) {
+            questionStats.close(5000);
+            questionStats = null;
+        }
+        if (journal != null) {
+            journal.close(5000);
+            journal = null;
+        }
     }
 
     /* ------------------ Player Events ------------------ */
 
     @EventHandler
     public void onPlayerJoin(PlayerJoinEvent event) {
-        // If trivia is enabled and this is the *first* player online, restart fresh
+        // If trivia is enabled and this is the *first* player online, start a round right away
         if (!triviaEnabled) return;
 
         // By the time the event fires, the joining player is counted in getOnlinePlayers()
         if (Bukkit.getOnlinePlayers().size() == 1) {
-            getLogger().info("First player joined; restarting trivia loop fresh.");
-            restartLoopFresh(true);
+            getLogger().info("First player joined; restarting trivia sessions.");
+            // On Folia this fires on the player's region thread; sessions live on the driver's
+            scheduler.execute(() -> {
+                for (TriviaSession s : sessions) s.restart(ticks);
+            });
+        }
+    }
+
+    @EventHandler
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        UUID id = event.getPlayer().getUniqueId();
+        for (TriviaSession s : sessions) s.forget(id);
+    }
+
+    /**
+     * Judges answers on the async chat thread against every session the player belongs to. No
+     * session state is locked: chat threads meet only on the CAS that picks each round's winner
+     * and, briefly, on an answer-throttle stripe when two players who hash to the same one answer
+     * at once. Announcements happen on the session's next tick.
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onChat(AsyncChatEvent event) {
+        if (!answersEnabled) return;
+
+        String message = null;
+        for (TriviaSession s : sessions) {
+            if (!s.hasActiveQuestion()) continue;
+            if (message == null) message = PlainTextComponentSerializer.plainText().serialize(event.message());
+            s.handleAnswer(event.getPlayer(), message);
         }
     }
 
@@ -90,6 +150,21 @@ public final class TriviaPlugin extends JavaPlugin implements TabExecutor, Liste
     public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
         if (!command.getName().equalsIgnoreCase("trivia")) return false;
 
+        // Folia runs player commands on the player's region thread; replay them on the driver's
+        if (!scheduler.isDriverThread()) {
+            scheduler.execute(() -> onCommand(sender, command, label, args));
+            return true;
+        }
+
+        if (args.length > 0 && args[0].equalsIgnoreCase("top")) {
+            if (!sender.hasPermission("trivia.top")) {
+                sender.sendMessage(ChatColor.RED + "You don't have permission to view the leaderboard.");
+                return true;
+            }
+            showTop(sender, args);
+            return true;
+        }
+
         if (!sender.hasPermission("trivia.manage")) {
             sender.sendMessage(ChatColor.RED + "You don't have permission to manage trivia.");
             return true;
@@ -105,33 +180,33 @@ public final class TriviaPlugin extends JavaPlugin implements TabExecutor, Liste
         switch (sub) {
             case "enable" -> {
                 triviaEnabled = true;
-                startLoopIfNeeded();
+                for (TriviaSession s : sessions) s.start(ticks);
                 sender.sendMessage(ChatColor.GREEN + "Trivia enabled.");
             }
             case "disable" -> {
                 triviaEnabled = false;
-                stopLoop();
+                for (TriviaSession s : sessions) s.stop();
                 sender.sendMessage(ChatColor.RED + "Trivia disabled.");
             }
             case "status" -> {
                 sender.sendMessage(ChatColor.AQUA + "Trivia is " + (triviaEnabled ? "ENABLED" : "DISABLED")
-                        + ChatColor.GRAY + " | Queue=" + queue.size()
-                        + " | Active=" + cycleActive
-                        + " | Gen=" + loopGeneration);
+                        + ChatColor.GRAY + " | Sessions=" + sessions.size()
+                        + " | Stored=" + (store != null ? store.size() : "off")
+                        + " | Recent=" + (recent != null ? recent.size() + " (" + recent.describe() + ")" : "off")
+                        + " | Question stats=" + (questionStats != null ? questionStats.describe() : "off")
+                        + " | Journal=" + (journal != null ? journal.describe() : "off"));
+                if (cluster != null) sender.sendMessage(ChatColor.GRAY + "  Cluster: " + cluster.describe());
+                for (TriviaSession s : sessions) {
+                    sender.sendMessage(ChatColor.GRAY + "  " + s.status());
+                }
             }
             case "reload" -> {
                 reloadConfig();
                 loadSettings(getConfig());
                 sender.sendMessage(ChatColor.GREEN + "Trivia config reloaded.");
 
-                // Start completely fresh with new config (new category/difficulty/etc)
-                if (triviaEnabled) {
-                    restartLoopFresh(true);
-                } else {
-                    queue.clear();
-                    fetching.set(false);
-                    stopLoop();
-                }
+                // Start completely fresh with new config (new sessions/category/difficulty/etc)
+                restartSessions(true);
             }
             case "now" -> {
                 if (!triviaEnabled) {
@@ -139,19 +214,29 @@ public final class TriviaPlugin extends JavaPlugin implements TabExecutor, Liste
                     return true;
                 }
 
-                stopLoop();              // kill any old scheduled tasks
-                cycleActive = true;
-
-                loopGeneration++;        // single increment only
-                int myGen = loopGeneration;
-
-                runOneCycleOrWait(myGen);
+                List<TriviaSession> targets = sessions;
+                if (args.length >= 2) {
+                    TriviaSession s = session(args[1]);
+                    if (s == null) {
+                        sender.sendMessage(ChatColor.RED + "Unknown session: " + args[1]);
+                        return true;
+                    }
+                    targets = List.of(s);
+                }
+                for (TriviaSession s : targets) s.askNow(ticks);
                 sender.sendMessage(ChatColor.GREEN + "Trivia cycle forced to run now.");
             }
 
 
             // --- CONFIG COMMANDS ---
 
+            case "metrics" -> {
+                sender.sendMessage(ChatColor.AQUA + "Trivia metrics (since enable):");
+                for (String line : metrics.summary(queueDepths())) {
+                    sender.sendMessage(ChatColor.GRAY + "  " + line);
+                }
+            }
+
             case "config" -> {
                 showConfig(sender);
             }
@@ -169,7 +254,7 @@ public final class TriviaPlugin extends JavaPlugin implements TabExecutor, Liste
                     getConfig().set("amount", amount);
                     saveConfig();
                     sender.sendMessage(ChatColor.GREEN + "Set amount to " + amount + ".");
-                    restartLoopFresh(true);
+                    restartSessions(true);
                 } catch (NumberFormatException e) {
                     sender.sendMessage(ChatColor.RED + "Invalid number: " + args[1]);
                 }
@@ -189,7 +274,7 @@ public final class TriviaPlugin extends JavaPlugin implements TabExecutor, Liste
                 getConfig().set("category", value);
                 saveConfig();
                 sender.sendMessage(ChatColor.GREEN + "Set category to " + (value.isEmpty() ? "any" : value) + ".");
-                restartLoopFresh(true);
+                restartSessions(true);
             }
             case "difficulty" -> {
                 if (args.length < 2) {
@@ -209,7 +294,7 @@ public final class TriviaPlugin extends JavaPlugin implements TabExecutor, Liste
                 getConfig().set("difficulty", stored);
                 saveConfig();
                 sender.sendMessage(ChatColor.GREEN + "Set difficulty to " + (stored.isEmpty() ? "any" : stored) + ".");
-                restartLoopFresh(true);
+                restartSessions(true);
             }
             case "type" -> {
                 if (args.length < 2) {
@@ -229,7 +314,7 @@ public final class TriviaPlugin extends JavaPlugin implements TabExecutor, Liste
                 getConfig().set("type", stored);
                 saveConfig();
                 sender.sendMessage(ChatColor.GREEN + "Set question type to " + (stored.isEmpty() ? "any" : stored) + ".");
-                restartLoopFresh(true);
+                restartSessions(true);
             }
             case "encode" -> {
                 if (args.length < 2) {
@@ -240,7 +325,7 @@ public final class TriviaPlugin extends JavaPlugin implements TabExecutor, Liste
                 getConfig().set("encode", enc);
                 saveConfig();
                 sender.sendMessage(ChatColor.GREEN + "Set encode to " + enc + ".");
-                restartLoopFresh(true);
+                restartSessions(true);
             }
             case "delay" -> {
                 if (args.length < 3) {
@@ -257,10 +342,9 @@ public final class TriviaPlugin extends JavaPlugin implements TabExecutor, Liste
                     getConfig().set("answer_delay_seconds", answerSec);
                     getConfig().set("between_questions_delay_seconds", betweenSec);
                     saveConfig();
-                    loadSettings(getConfig());
                     sender.sendMessage(ChatColor.GREEN + "Set delays: answer=" + answerSec +
                             "s, between=" + betweenSec + "s.");
-                    restartLoopFresh(false);
+                    restartSessions(false);
                 } catch (NumberFormatException e) {
                     sender.sendMessage(ChatColor.RED + "Invalid numbers: " + args[1] + " " + args[2]);
                 }
@@ -278,8 +362,8 @@ public final class TriviaPlugin extends JavaPlugin implements TabExecutor, Liste
                     }
                     getConfig().set("fetch_batch_size", n);
                     saveConfig();
-                    loadSettings(getConfig());
                     sender.sendMessage(ChatColor.GREEN + "Set fetch_batch_size to " + n + ".");
+                    restartSessions(false);
                 } catch (NumberFormatException e) {
                     sender.sendMessage(ChatColor.RED + "Invalid number: " + args[1]);
                 }
@@ -297,7 +381,7 @@ public final class TriviaPlugin extends JavaPlugin implements TabExecutor, Liste
                 String prefix = sb.toString();
                 getConfig().set("chat_prefix", prefix);
                 saveConfig();
-                loadSettings(getConfig());
+                restartSessions(false);
                 sender.sendMessage(ChatColor.GREEN + "Set chat prefix to: " +
                         ChatColor.translateAlternateColorCodes('&', prefix) +
                         ChatColor.GRAY + " (raw: \"" + prefix + "\")");
@@ -310,7 +394,9 @@ public final class TriviaPlugin extends JavaPlugin implements TabExecutor, Liste
 
     private void sendUsage(CommandSender sender) {
         sender.sendMessage(ChatColor.YELLOW + "Trivia commands:");
-        sender.sendMessage(ChatColor.GRAY + "  /trivia enable|disable|status|reload|now");
+        sender.sendMessage(ChatColor.GRAY + "  /trivia enable|disable|status|metrics|reload");
+        sender.sendMessage(ChatColor.GRAY + "  /trivia now [session]");
+        sender.sendMessage(ChatColor.GRAY + "  /trivia top [n]");
         sender.sendMessage(ChatColor.GRAY + "  /trivia config");
         sender.sendMessage(ChatColor.GRAY + "  /trivia amount <n>");
         sender.sendMessage(ChatColor.GRAY + "  /trivia category <id|any>");
@@ -322,6 +408,39 @@ public final class TriviaPlugin extends JavaPlugin implements TabExecutor, Liste
         sender.sendMessage(ChatColor.GRAY + "  /trivia prefix <text...>");
     }
 
+    private void showTop(CommandSender sender, String[] args) {
+        Leaderboard lb = leaderboard;
+        if (lb == null) {
+            sender.sendMessage(ChatColor.YELLOW + "The trivia leaderboard is disabled.");
+            return;
+        }
+
+        int n = 10;
+        if (args.length >= 2) {
+            try {
+                n = Integer.parseInt(args[1]);
+            } catch (NumberFormatException e) {
+                sender.sendMessage(ChatColor.RED + "Invalid number: " + args[1]);
+                return;
+            }
+        }
+        n = Math.max(1, Math.min(n, lb.topSize()));
+
+        List<Leaderboard.Standing> top = lb.top(n);
+        if (top.isEmpty()) {
+            sender.sendMessage(ChatColor.YELLOW + "Nobody has answered a trivia question yet.");
+            return;
+        }
+        sender.sendMessage(ChatColor.AQUA + "Trivia top " + top.size() + ":");
+        for (int i = 0; i < top.size(); i++) {
+            Leaderboard.Standing s = top.get(i);
+            sender.sendMessage(ChatColor.GRAY + "  " + (i + 1) + ". " + ChatColor.WHITE + s.name()
+                    + ChatColor.GRAY + " - " + s.correct() + " correct"
+                    + " | best streak " + s.bestStreak()
+                    + " | avg " + String.format(Locale.ROOT, "%.1f", s.averageMillis() / 1000.0) + "s");
+        }
+    }
+
     private void showConfig(CommandSender sender) {
         FileConfiguration cfg = getConfig();
         sender.sendMessage(ChatColor.AQUA + "Trivia configuration:");
@@ -335,7 +454,22 @@ public final class TriviaPlugin extends JavaPlugin implements TabExecutor, Liste
         sender.sendMessage(ChatColor.GRAY + "  between_questions_delay_seconds: " +
                 cfg.getInt("between_questions_delay_seconds", 10));
         sender.sendMessage(ChatColor.GRAY + "  fetch_batch_size: " + cfg.getInt("fetch_batch_size", 50));
+        sender.sendMessage(ChatColor.GRAY + "  prefetch: " + (cfg.getBoolean("prefetch.adaptive", true)
+                ? "adaptive, " + cfg.getInt("prefetch.refill_seconds", 120) + "s per fetch" : "fixed"));
         sender.sendMessage(ChatColor.GRAY + "  chat_prefix: \"" + cfg.getString("chat_prefix", "&dTrivia:&r ") + "\"");
+        sender.sendMessage(ChatColor.GRAY + "  audience: " + cfg.getString("audience", "all"));
+        StringBuilder names = new StringBuilder();
+        for (TriviaSession s : sessions) {
+            if (!names.isEmpty()) names.append(", ");
+            names.append(s.name());
+        }
+        sender.sendMessage(ChatColor.GRAY + "  sessions: " + names);
+        StringBuilder sources = new StringBuilder();
+        for (QuestionSource s : fetcher.sources()) {
+            if (!sources.isEmpty()) sources.append(", ");
+            sources.append(s.name()).append(" x").append(s.weight());
+        }
+        sender.sendMessage(ChatColor.GRAY + "  sources: " + sources);
     }
 
     @Override
@@ -344,7 +478,7 @@ public final class TriviaPlugin extends JavaPlugin implements TabExecutor, Liste
         if (!sender.hasPermission("trivia.manage")) return Collections.emptyList();
 
         List<String> root = Arrays.asList(
-                "enable", "disable", "status", "reload", "now",
+                "enable", "disable", "status", "metrics", "reload", "now", "top",
                 "config", "amount", "category", "difficulty", "type",
                 "encode", "delay", "fetchbatch", "prefix"
         );
@@ -364,6 +498,11 @@ public final class TriviaPlugin extends JavaPlugin implements TabExecutor, Liste
                 case "type" -> filterStarts(args[1], List.of("multiple", "boolean", "any"));
                 case "encode" -> filterStarts(args[1], List.of("base64", "url3986"));
                 case "category" -> filterStarts(args[1], List.of("any"));
+                case "now" -> {
+                    List<String> names = new ArrayList<>();
+                    for (TriviaSession s : sessions) names.add(s.name());
+                    yield filterStarts(args[1], names);
+                }
                 default -> Collections.emptyList();
             };
         }
@@ -378,208 +517,391 @@ public final class TriviaPlugin extends JavaPlugin implements TabExecutor, Liste
         return out;
     }
 
-    /* ------------------ Loop & Generation Control ------------------ */
+    /* ------------------ Sessions ------------------ */
 
-    private void startLoopIfNeeded() {
-        if (!triviaEnabled) return;
-        if (cycleActive) return; // already running
-
-        cycleActive = true;
-        loopGeneration++;          // new generation
-        int myGen = loopGeneration;
-        runOneCycleOrWait(myGen);
+    /** Driver task: advances every session's state machine by one tick. */
+    private void tickSessions() {
+        long start = System.nanoTime();
+        long now = ++ticks;
+        if (cluster != null) cluster.tick(now);
+        for (TriviaSession s : sessions) s.tick(now);
+        if (statusBoard != null) {
+            statusBoard.update(sessions, triviaEnabled, Bukkit.getOnlinePlayers().size(), leaderboard, now);
+        }
+        metrics.tickTime.record(System.nanoTime() - start);
     }
 
-    private void stopLoop() {
-        cycleActive = false;
-        loopGeneration++; // invalidate scheduled tasks from previous generations
+    TriviaSession session(String name) {
+        for (TriviaSession s : sessions) {
+            if (s.name().equalsIgnoreCase(name)) return s;
+        }
+        return null;
     }
 
     /**
-     * Completely restart the trivia loop with a fresh generation and (optionally) fresh fetch.
-     * Used by /trivia reload, config-changing commands, and on first player join.
+     * Rebuilds the sessions from config. With {@code fresh}, every session starts over with empty
+     * queues; otherwise sessions whose categories are unchanged keep their queues and only
+     * pick up the new timing, prefix and audience.
      */
-    private void restartLoopFresh(boolean fetchImmediately) {
-        cycleActive = false;
-        loopGeneration++;
-        queue.clear();
-        fetching.set(false);
+    private void restartSessions(boolean fresh) {
+        Map<String, TriviaSession> old = new HashMap<>();
+        for (TriviaSession s : sessions) old.put(s.name(), s);
+
+        List<TriviaSession> next = new ArrayList<>();
+        for (SessionConfig cfg : loadSessionConfigs(getConfig())) {
+            TriviaSession s = old.remove(cfg.name());
+            if (s != null && !fresh && s.config().categories().equals(cfg.categories())) {
+                s.reconfigure(cfg);
+            } else {
+                if (s != null) s.close();
+                s = new TriviaSession(this, fetcher, cfg);
+            }
+            next.add(s);
+        }
+        for (TriviaSession s : old.values()) s.close();
+        sessions = List.copyOf(next);
 
-        if (fetchImmediately) {
-            fetchQuestionsAsync();
+        if (triviaEnabled) {
+            for (TriviaSession s : sessions) s.start(ticks);
         }
+    }
 
-        cycleActive = true;
-        loopGeneration++;
-        int myGen = loopGeneration;
-        runOneCycleOrWait(myGen);
+    private List<SessionConfig> loadSessionConfigs(FileConfiguration cfg) {
+        List<SessionConfig> out = new ArrayList<>();
+        ConfigurationSection section = cfg.getConfigurationSection("sessions");
+        if (section != null) {
+            for (String name : section.getKeys(false)) {
+                if (!section.isConfigurationSection(name)) continue;
+                out.add(SessionConfig.from(name, section.getConfigurationSection(name), cfg));
+            }
+        }
+        if (out.isEmpty()) {
+            out.add(SessionConfig.from(SessionConfig.GLOBAL, null, cfg));
+        }
+        return out;
     }
 
-    private void runOneCycleOrWait(int gen) {
-        if (!triviaEnabled || !cycleActive || gen != loopGeneration) return;
+    /** Driver ticks since enable; driver thread only. */
+    long ticks() {
+        return ticks;
+    }
 
-        if (Bukkit.getOnlinePlayers().isEmpty()) {
-            Bukkit.getScheduler().runTaskLater(this, () -> runOneCycleOrWait(gen), 20L * 10);
-            return;
-        }
+    boolean earlyReveal() {
+        return earlyReveal;
+    }
 
-        if (queue.size() < Math.max(5, fetchBatchSize / 4) && !fetching.get()) {
-            fetchQuestionsAsync();
-        }
+    Leaderboard leaderboard() {
+        return leaderboard;
+    }
 
-        TriviaQuestion q = queue.pollFirst();
-        if (q == null) {
-            Bukkit.getScheduler().runTaskLater(this, () -> runOneCycleOrWait(gen), 20L * 5);
-            return;
-        }
+    QuestionStats questionStats() {
+        return questionStats;
+    }
 
-        broadcastPrefixed(ChatColor.LIGHT_PURPLE + "Question: " + ChatColor.RESET + q.question());
-        List<String> choices = q.choices();
-        char[] letters = "ABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
-        for (int i = 0; i < choices.size(); i++) {
-            broadcastPrefixed(ChatColor.GRAY + "  " + letters[i] + ") " + ChatColor.WHITE + choices.get(i));
-        }
+    Journal journal() {
+        return journal;
+    }
+
+    FingerprintIndex recentQuestions() {
+        return recent;
+    }
+
+    TriviaMetrics metrics() {
+        return metrics;
+    }
 
-        Bukkit.getScheduler().runTaskLater(this, () -> {
-            if (!triviaEnabled || !cycleActive || gen != loopGeneration) return;
-            if (Bukkit.getOnlinePlayers().isEmpty()) return;
+    ClusterNode cluster() {
+        return cluster;
+    }
 
-            int idx = q.correctIndex();
-            String answerLine = ChatColor.GREEN + "Answer: " + ChatColor.RESET
-                    + letters[idx] + ") " + choices.get(idx);
-            broadcastPrefixed(answerLine);
+    /** Session name to queue depth, in session order; safe from any thread. */
+    private Map<String, Integer> queueDepths() {
+        Map<String, Integer> out = new LinkedHashMap<>();
+        for (TriviaSession s : sessions) out.put(s.name(), s.queueSize());
+        return out;
+    }
 
-            Bukkit.getScheduler().runTaskLater(this, () -> {
-                if (!triviaEnabled || !cycleActive || gen != loopGeneration) return;
-                runOneCycleOrWait(gen);
-            }, betweenQuestionsDelayTicks);
+    /* ------------------ Question Store ------------------ */
 
-        }, answerDelayTicks);
+    private void openStore() {
+        FileConfiguration cfg = getConfig();
+        if (!cfg.getBoolean("question_store.enabled", true)) return;
+        try {
+            store = QuestionStore.open(getDataFolder(), cfg.getInt("question_store.cache_size", 256));
+        } catch (IOException e) {
+            getLogger().warning("Could not open question store; serving fetched questions only: " + e.getMessage());
+            store = null;
+        }
     }
 
-    private void broadcastPrefixed(String message) {
-        if (Bukkit.getOnlinePlayers().isEmpty()) return;
-        String prefix = ChatColor.translateAlternateColorCodes('&', chatPrefix);
-        for (Player p : Bukkit.getOnlinePlayers()) {
-            p.sendMessage(prefix + message);
+    private void closeStore() {
+        if (store == null) return;
+        try {
+            store.close();
+        } catch (IOException e) {
+            getLogger().warning("Error closing question store: " + e.getMessage());
         }
-        getServer().getConsoleSender().sendMessage(prefix + ChatColor.stripColor(message));
+        store = null;
     }
 
-    /* ------------------ Fetching ------------------ */
+    /* ------------------ Repeat Window ------------------ */
 
-    private CompletableFuture<Void> fetchQuestionsAsync() {
-        if (Bukkit.getOnlinePlayers().isEmpty()) {
-            getLogger().fine("Skipping fetch: no players online.");
-            return CompletableFuture.completedFuture(null);
+    private void openRecent() {
+        FileConfiguration cfg = getConfig();
+        try {
+            recent = FingerprintIndex.open(getDataFolder(),
+                    cfg.getInt("repeats.window_questions", 5000),
+                    cfg.getInt("repeats.window_days", 0),
+                    cfg.getInt("repeats.exact_limit", 200000));
+        } catch (IOException e) {
+            getLogger().warning("Could not load recent questions; repeats won't be suppressed: " + e.getMessage());
+            recent = null;
         }
+    }
 
-        if (!fetching.compareAndSet(false, true)) {
-            return CompletableFuture.completedFuture(null);
+    private void closeRecent() {
+        if (recent == null) return;
+        try {
+            recent.save();
+        } catch (IOException e) {
+            getLogger().warning("Error saving recent questions: " + e.getMessage());
         }
+        recent = null;
+    }
 
+    /* ------------------ Metrics ------------------ */
+
+    private void startMetricsServer() {
         FileConfiguration cfg = getConfig();
+        if (!cfg.getBoolean("metrics.http.enabled", false)) return;
+        try {
+            metricsServer = MetricsServer.start(cfg.getInt("metrics.http.port", 9465),
+                    () -> metrics.prometheus(queueDepths()));
+            getLogger().info("Serving trivia metrics on http://127.0.0.1:" + metricsServer.port() + "/metrics");
+        } catch (IOException e) {
+            getLogger().warning("Could not start the metrics endpoint: " + e.getMessage());
+        }
+    }
 
-        int amount = Math.max(1, cfg.getInt("amount", 50));
-        String baseUrl = cfg.getString("opentdb.url", "https://opentdb.com/api.php");
-        String category = cfg.getString("category", "");
-        String difficulty = cfg.getString("difficulty", "");
-        String type = cfg.getString("type", "");
-        String encode = cfg.getString("encode", "base64");
+    private void stopMetricsServer() {
+        if (metricsServer == null) return;
+        metricsServer.stop();
+        metricsServer = null;
+    }
 
-        StringBuilder url = new StringBuilder(baseUrl)
-                .append("?amount=").append(amount);
+    /* ------------------ Status Endpoint ------------------ */
 
-        if (category != null && !category.isBlank()) {
-            url.append("&category=").append(category);
+    private void startStatusServer() {
+        FileConfiguration cfg = getConfig();
+        if (!cfg.getBoolean("status.http.enabled", false)) return;
+        try {
+            InetSocketAddress bind = new InetSocketAddress(cfg.getString("status.http.bind", "127.0.0.1"),
+                    cfg.getInt("status.http.port", 9466));
+            StatusBoard board = new StatusBoard();
+            statusServer = StatusServer.start(bind, board);
+            statusBoard = board;
+            getLogger().info("Serving trivia status on http://" + bind.getHostString() + ":" + statusServer.port()
+                    + "/status and /leaderboard");
+        } catch (IOException e) {
+            getLogger().warning("Could not start the status endpoint: " + e.getMessage());
         }
-        if (difficulty != null && !difficulty.isBlank()) {
-            url.append("&difficulty=").append(difficulty);
+    }
+
+    private void stopStatusServer() {
+        if (statusServer == null) return;
+        statusServer.stop();
+        statusServer = null;
+        statusBoard = null;
+    }
+
+    /* ------------------ Cluster ------------------ */
+
+    private void startCluster() {
+        FileConfiguration cfg = getConfig();
+        if (!cfg.getBoolean("cluster.enabled", false)) return;
+        String id = cfg.getString("cluster.node_id", "").trim();
+        if (id.isEmpty()) {
+            // Ports are often the same on every backend, so there is no safe default
+            getLogger().warning("Could not start cluster mode; set cluster.node_id to a name unique to this server."
+                    + " Running standalone.");
+            return;
         }
-        if (type != null && !type.isBlank()) {
-            url.append("&type=").append(type);
+        String secret = cfg.getString("cluster.secret", "");
+        if (secret.isBlank()) {
+            // Anyone who can reach the port could otherwise post questions and pick winners
+            getLogger().warning("Could not start cluster mode; set cluster.secret to the same long random string on"
+                    + " every server. Running standalone.");
+            return;
         }
-        if (encode != null && !encode.isBlank()) {
-            url.append("&encode=").append(encode);
+        try {
+            List<InetSocketAddress> peers = new ArrayList<>();
+            for (String peer : cfg.getStringList("cluster.peers")) peers.add(TcpClusterTransport.address(peer));
+            ClusterTransport transport = new TcpClusterTransport(getLogger(),
+                    TcpClusterTransport.address(cfg.getString("cluster.bind", "127.0.0.1:25590")),
+                    peers, secret);
+            ClusterNode node = new ClusterNode(getLogger(), scheduler::execute, id, transport, new ClusterRounds());
+            node.start();
+            cluster = node;
+            getLogger().info("Joined trivia cluster as " + id + " with " + peers.size() + " peer(s).");
+        } catch (IOException | IllegalArgumentException e) {
+            getLogger().warning("Could not start cluster mode; running standalone: " + e.getMessage());
         }
+    }
 
-        getLogger().info("Fetching trivia from: " + url);
-
-        HttpRequest req = HttpRequest.newBuilder(URI.create(url.toString())).GET().build();
+    private void stopCluster() {
+        if (cluster == null) return;
+        cluster.close();
+        cluster = null;
+    }
 
-        return http.sendAsync(req, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8))
-                .thenApply(HttpResponse::body)
-                .handle((body, err) -> {
-                    if (err != null) {
-                        getLogger().warning("Failed to fetch trivia: " + err.getMessage());
-                        return null;
-                    }
-                    try {
-                        JsonObject root = JsonParser.parseString(body).getAsJsonObject();
-                        if (!root.has("response_code")) {
-                            getLogger().warning("OpenTriviaDB: missing response_code");
-                            return null;
-                        }
-                        int code = root.get("response_code").getAsInt();
-                        if (code != 0) {
-                            getLogger().warning("OpenTriviaDB response_code=" + code + " (no questions added)");
-                            return null;
-                        }
+    /** Hands the leader's rounds to the session of the same name, if this server runs one. */
+    private final class ClusterRounds implements ClusterNode.Rounds {
+        @Override
+        public void show(String session, long round, TriviaQuestion q, long answerTicks) {
+            TriviaSession s = session(session);
+            if (s != null) s.showRemote(round, q, answerTicks, ticks);
+        }
 
-                        JsonArray results = root.getAsJsonArray("results");
-                        int added = 0;
-                        for (JsonElement element : results) {
-                            JsonObject o = element.getAsJsonObject();
+        @Override
+        public void reveal(String session, long round) {
+            TriviaSession s = session(session);
+            if (s != null) s.revealRemote(round, ticks);
+        }
 
-                            String qText = decodeB64(o.get("question").getAsString());
-                            String correct = decodeB64(o.get("correct_answer").getAsString());
-                            if (qText == null || qText.isBlank() || correct == null || correct.isBlank()) {
-                                continue;
-                            }
+        @Override
+        public void claim(String session, long round, ActiveQuestion.Win claim) {
+            TriviaSession s = session(session);
+            if (s != null) s.claimRemote(round, claim);
+        }
 
-                            List<String> options = new ArrayList<>();
-                            if (o.has("incorrect_answers")) {
-                                for (JsonElement je : o.getAsJsonArray("incorrect_answers")) {
-                                    options.add(decodeB64(je.getAsString()));
-                                }
-                            }
-                            options.add(correct);
+        @Override
+        public void winner(String session, long round, ActiveQuestion.Win win) {
+            TriviaSession s = session(session);
+            if (s != null) s.winnerRemote(round, win);
+        }
+    }
 
-                            Collections.shuffle(options, ThreadLocalRandom.current());
+    /* ------------------ Leaderboard ------------------ */
 
-                            int correctIdx = options.indexOf(correct);
-                            if (correctIdx < 0) continue;
+    private void openLeaderboard() {
+        FileConfiguration cfg = getConfig();
+        if (!cfg.getBoolean("leaderboard.enabled", true)) return;
+        try {
+            leaderboard = Leaderboard.open(getDataFolder(), getLogger(),
+                    cfg.getInt("leaderboard.size", 10), cfg.getInt("leaderboard.flush_seconds", 30));
+        } catch (IOException e) {
+            getLogger().warning("Could not open trivia stats; the leaderboard is disabled: " + e.getMessage());
+            leaderboard = null;
+        }
+    }
 
-                            queue.addLast(new TriviaQuestion(qText, options, correctIdx));
-                            added++;
-                        }
+    /* ------------------ Question Stats ------------------ */
 
-                        getLogger().info("Fetched " + added + " questions (queue=" + queue.size() + ")");
-                    } catch (Exception e) {
-                        getLogger().warning("Error parsing trivia: " + e.getMessage());
-                    }
-                    return null;
-                })
-                .whenComplete((v, t) -> fetching.set(false))
-                .thenApply(v -> null);
+    private void openQuestionStats() {
+        FileConfiguration cfg = getConfig();
+        if (!cfg.getBoolean("question_stats.enabled", true)) return;
+        try {
+            questionStats = QuestionStats.open(getDataFolder(), getLogger(), cfg.getInt("question_stats.flush_seconds", 60));
+        } catch (IOException e) {
+            getLogger().warning("Could not open question stats; questions won't be picked by difficulty: " + e.getMessage());
+            questionStats = null;
+        }
     }
 
-    private static String decodeB64(String s) {
+    /* ------------------ Journal ------------------ */
+
+    private void openJournal() {
+        FileConfiguration cfg = getConfig();
+        if (!cfg.getBoolean("journal.enabled", true)) return;
         try {
-            return new String(Base64.getDecoder().decode(s), StandardCharsets.UTF_8);
-        } catch (IllegalArgumentException e) {
-            return s; // fallback if not actually base64
+            journal = Journal.open(getDataFolder(), getLogger(), cfg.getInt("journal.segment_mb", 8),
+                    cfg.getInt("journal.max_segments", 32), cfg.getInt("journal.flush_seconds", 5));
+        } catch (IOException e) {
+            getLogger().warning("Could not open the round journal; rounds won't be recorded: " + e.getMessage());
+            journal = null;
         }
     }
 
     /* ------------------ Config ------------------ */
 
     private void loadSettings(FileConfiguration cfg) {
-        this.answerDelayTicks = Math.max(1, cfg.getInt("answer_delay_seconds", 15)) * 20;
-        this.betweenQuestionsDelayTicks =
-                Math.max(0, cfg.getInt("between_questions_delay_seconds", 10)) * 20;
-        this.fetchBatchSize = Math.max(5, cfg.getInt("fetch_batch_size", 50));
-        this.chatPrefix = Objects.requireNonNullElse(cfg.getString("chat_prefix"), "&dTrivia:&r ");
+        fetcher.setSources(loadSources(cfg));
         this.triviaEnabled = cfg.getBoolean("start_enabled", true);
+        this.answersEnabled = cfg.getBoolean("answers.enabled", true);
+        this.earlyReveal = cfg.getBoolean("answers.early_reveal", true);
+        this.aliases = loadAliases(cfg);
+    }
+
+    /**
+     * {@code answers.aliases}: groups of answers that count as each other in free-text mode,
+     * keyed by each member's normalized form.
+     */
+    private Map<String, List<String>> loadAliases(FileConfiguration cfg) {
+        Map<String, List<String>> out = new HashMap<>();
+        List<?> groups = cfg.getList("answers.aliases");
+        if (groups == null) return out;
+        for (Object group : groups) {
+            if (!(group instanceof List<?> list)) continue;
+            List<String> names = new ArrayList<>(list.size());
+            for (Object o : list) {
+                if (o != null) names.add(o.toString());
+            }
+            for (String name : names) out.put(AnswerMatcher.normalize(name), names);
+        }
+        return out;
+    }
+
+    /** The free-text matcher for a question's answer and any configured aliases of it. */
+    AnswerMatcher answerMatcher(String answer, int maxTypos) {
+        List<String> group = aliases.get(AnswerMatcher.normalize(answer));
+        if (group == null) return AnswerMatcher.of(List.of(answer), maxTypos);
+        List<String> accepted = new ArrayList<>(group.size() + 1);
+        accepted.add(answer);
+        accepted.addAll(group);
+        return AnswerMatcher.of(accepted, maxTypos);
+    }
+
+    /** The {@code sources} section, or OpenTriviaDB alone if it's empty. */
+    private List<QuestionSource> loadSources(FileConfiguration cfg) {
+        List<QuestionSource> out = new ArrayList<>();
+        ConfigurationSection section = cfg.getConfigurationSection("sources");
+        if (section != null) {
+            for (String name : section.getKeys(false)) {
+                ConfigurationSection src = section.getConfigurationSection(name);
+                if (src == null) continue;
+                int weight = Math.max(0, src.getInt("weight", 1));
+                String type = src.getString("type", name).toLowerCase(Locale.ROOT);
+                switch (type) {
+                    case "opentdb" -> out.add(openTdbSource(name, weight, cfg));
+                    case "http" -> {
+                        String url = src.getString("url", "");
+                        if (url.isBlank()) {
+                            getLogger().warning("Question source " + name + " has no url; skipping it.");
+                            continue;
+                        }
+                        out.add(new OpenTdbSource(fetcher, name, weight, url,
+                                src.getBoolean("session_tokens", false), src.getInt("rate_limit_seconds", 0)));
+                    }
+                    case "pack" -> {
+                        File file = new File(getDataFolder(), src.getString("file", ""));
+                        if (!file.isFile()) {
+                            getLogger().warning("Question pack " + file + " not found; skipping source " + name + ".");
+                            continue;
+                        }
+                        out.add(new PackSource(fetcher, name, weight, file));
+                    }
+                    default -> getLogger().warning("Unknown question source type '" + type + "' for " + name + ".");
+                }
+            }
+        }
+        if (out.isEmpty()) out.add(openTdbSource("opentdb", 1, cfg));
+        return out;
+    }
+
+    private QuestionSource openTdbSource(String name, int weight, FileConfiguration cfg) {
+        return new OpenTdbSource(fetcher, name, weight,
+                cfg.getString("opentdb.url", "https://opentdb.com/api.php"),
+                cfg.getBoolean("opentdb.session_tokens", true),
+                cfg.getInt("opentdb.rate_limit_seconds", 5));
     }
 }
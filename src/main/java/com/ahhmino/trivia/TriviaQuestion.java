@@ -1,19 +1,191 @@
 package com.ahhmino.trivia;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
+/**
+ * A question and its choices, packed for large in-memory banks: the text lives in one UTF-8
+ * {@code byte[]}, common answers are ids into the shared {@link AnswerDictionary}, and the choice
+ * order is a permutation in a single {@code long}. A question costs one object plus one array
+ * instead of a list, its backing array and a {@code String} per choice.
+ *
+ * <p>Answers are stored correct first ("canonical" order); {@link #choices()} applies the
+ * permutation, so reshuffling a question shares its bytes. The strings are decoded on each call;
+ * the ask path decodes them once per round and keeps them in its {@link ActiveQuestion}.
+ */
 public class TriviaQuestion {
-    private final String question;
-    private final List<String> choices; // randomized
-    private final int correctIndex;     // index within choices
+
+    /** Choices beyond this are dropped (the permutation has 4 bits per slot). */
+    static final int MAX_CHOICES = 16;
+
+    // varint question length, question, then per answer a varint (id << 1 | 1) for dictionary
+    // answers or (length << 1) followed by the answer's bytes
+    private final byte[] data;
+    private final long order;       // display slot i shows canonical answer (order >>> 4i) & 15
+    private final byte count;
+    private final long fingerprint; // see FingerprintIndex.of
 
     public TriviaQuestion(String question, List<String> choices, int correctIndex) {
-        this.question = question;
-        this.choices = choices;
-        this.correctIndex = correctIndex;
+        this(question, choices, correctIndex, FingerprintIndex.of(question));
+    }
+
+    /** Keeps the given display order. */
+    TriviaQuestion(String question, List<String> choices, int correctIndex, long fingerprint) {
+        int n = Math.min(choices.size(), MAX_CHOICES);
+        if (correctIndex < 0 || correctIndex >= n) throw new IllegalArgumentException("correctIndex " + correctIndex + " of " + n);
+        String[] canonical = new String[n];
+        long perm = 0;
+        canonical[0] = choices.get(correctIndex);
+        for (int i = 0, j = 1; i < n; i++) {
+            int slot = i == correctIndex ? 0 : j++;
+            if (slot != 0) canonical[slot] = choices.get(i);
+            perm |= (long) slot << (4 * i);
+        }
+        this.data = encode(question, canonical);
+        this.order = perm;
+        this.count = (byte) n;
+        this.fingerprint = fingerprint;
+    }
+
+    private TriviaQuestion(byte[] data, long order, int count, long fingerprint) {
+        this.data = data;
+        this.order = order;
+        this.count = (byte) count;
+        this.fingerprint = fingerprint;
+    }
+
+    /** The correct answer and the wrong ones in a uniformly random display order. */
+    static TriviaQuestion shuffled(String question, String correct, List<String> incorrect, long fingerprint) {
+        int n = Math.min(incorrect.size() + 1, MAX_CHOICES);
+        String[] canonical = new String[n];
+        canonical[0] = correct;
+        for (int i = 1; i < n; i++) canonical[i] = incorrect.get(i - 1);
+        return new TriviaQuestion(encode(question, canonical), randomOrder(n), n, fingerprint);
+    }
+
+    /** The same question with its choices in a new random order; shares this question's bytes. */
+    TriviaQuestion reshuffled() {
+        return new TriviaQuestion(data, randomOrder(count), count, fingerprint);
+    }
+
+    public String question() {
+        int len = varint(data, 0);
+        return new String(data, varintSize(len), len, StandardCharsets.UTF_8);
+    }
+
+    /** The choices in display order; an unmodifiable list decoded on each call. */
+    public List<String> choices() {
+        String[] canonical = answers();
+        String[] out = new String[count];
+        for (int i = 0; i < count; i++) out[i] = canonical[slot(i)];
+        return List.of(out);
     }
 
-    public String question() { return question; }
-    public List<String> choices() { return choices; }
-    public int correctIndex() { return correctIndex; }
+    public int correctIndex() {
+        for (int i = 0; i < count; i++) {
+            if (slot(i) == 0) return i;
+        }
+        throw new IllegalStateException("no correct answer");
+    }
+
+    public long fingerprint() { return fingerprint; }
+
+    int choiceCount() { return count; }
+
+    /** Bytes held by this question, object headers included (compressed oops). */
+    long footprint() {
+        return 40 + 16 + ((data.length + 7) & ~7);
+    }
+
+    private int slot(int i) {
+        return (int) (order >>> (4 * i)) & 15;
+    }
+
+    /* ------------------ Encoding ------------------ */
+
+    private String[] answers() {
+        String[] out = new String[count];
+        int len = varint(data, 0);
+        int pos = varintSize(len) + len;
+        for (int i = 0; i < count; i++) {
+            int tag = varint(data, pos);
+            pos += varintSize(tag);
+            if ((tag & 1) != 0) {
+                out[i] = AnswerDictionary.get(tag >>> 1);
+            } else {
+                int n = tag >>> 1;
+                out[i] = new String(data, pos, n, StandardCharsets.UTF_8);
+                pos += n;
+            }
+        }
+        return out;
+    }
+
+    private static byte[] encode(String question, String[] canonical) {
+        byte[] text = question.getBytes(StandardCharsets.UTF_8);
+        int[] tags = new int[canonical.length];
+        byte[][] inline = new byte[canonical.length][];
+        int size = varintSize(text.length) + text.length;
+        for (int i = 0; i < canonical.length; i++) {
+            int id = AnswerDictionary.id(canonical[i]);
+            if (id >= 0) {
+                tags[i] = id << 1 | 1;
+            } else {
+                inline[i] = canonical[i].getBytes(StandardCharsets.UTF_8);
+                tags[i] = inline[i].length << 1;
+                size += inline[i].length;
+            }
+            size += varintSize(tags[i]);
+        }
+
+        byte[] out = new byte[size];
+        int pos = putVarint(out, 0, text.length);
+        System.arraycopy(text, 0, out, pos, text.length);
+        pos += text.length;
+        for (int i = 0; i < canonical.length; i++) {
+            pos = putVarint(out, pos, tags[i]);
+            if (inline[i] != null) {
+                System.arraycopy(inline[i], 0, out, pos, inline[i].length);
+                pos += inline[i].length;
+            }
+        }
+        return out;
+    }
+
+    /** A uniformly random permutation of {@code n} slots (Fisher-Yates over the nibbles). */
+    private static long randomOrder(int n) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        long perm = 0;
+        for (int i = 0; i < n; i++) perm |= (long) i << (4 * i);
+        for (int i = n - 1; i > 0; i--) {
+            int j = rnd.nextInt(i + 1);
+            long a = (perm >>> (4 * i)) & 15, b = (perm >>> (4 * j)) & 15;
+            perm &= ~((15L << (4 * i)) | (15L << (4 * j)));
+            perm |= (b << (4 * i)) | (a << (4 * j));
+        }
+        return perm;
+    }
+
+    private static int varint(byte[] b, int pos) {
+        int v = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte x = b[pos++];
+            v |= (x & 0x7f) << shift;
+            if (x >= 0) return v;
+        }
+    }
+
+    private static int varintSize(int v) {
+        return v < 1 << 7 ? 1 : v < 1 << 14 ? 2 : v < 1 << 21 ? 3 : v < 1 << 28 ? 4 : 5;
+    }
+
+    private static int putVarint(byte[] b, int pos, int v) {
+        while ((v & ~0x7f) != 0) {
+            b[pos++] = (byte) ((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        b[pos++] = (byte) v;
+        return pos;
+    }
 }
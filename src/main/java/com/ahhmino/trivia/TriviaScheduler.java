@@ -0,0 +1,117 @@
+package com.ahhmino.trivia;
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Owns the one repeating task that drives every session, and the thread it runs on: the main
+ * thread on Bukkit/Paper, the global region thread on Folia. Session state is only touched from
+ * that thread; callers elsewhere (region-thread commands and events on Folia) hop over with
+ * {@link #execute(Runnable)}.
+ */
+abstract class TriviaScheduler {
+
+    protected final Plugin plugin;
+
+    private TriviaScheduler(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    static TriviaScheduler create(Plugin plugin) {
+        return isFolia() ? new Folia(plugin) : new Main(plugin);
+    }
+
+    static boolean isFolia() {
+        try {
+            Class.forName("io.papermc.paper.threadedregions.RegionizedServer");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /** Starts calling {@code tick} once per server tick. */
+    abstract void startDriver(Runnable tick);
+
+    abstract void stopDriver();
+
+    /** Whether the caller is already on the driver's thread. */
+    abstract boolean isDriverThread();
+
+    /** Runs {@code task} on the driver's thread: inline if already there, otherwise on the next tick. */
+    final void execute(Runnable task) {
+        if (isDriverThread()) {
+            task.run();
+        } else {
+            schedule(task);
+        }
+    }
+
+    protected abstract void schedule(Runnable task);
+
+    /* ------------------ Bukkit / Paper ------------------ */
+
+    private static final class Main extends TriviaScheduler {
+        private BukkitTask driver;
+
+        Main(Plugin plugin) {
+            super(plugin);
+        }
+
+        @Override
+        void startDriver(Runnable tick) {
+            stopDriver();
+            driver = Bukkit.getScheduler().runTaskTimer(plugin, tick, 1L, 1L);
+        }
+
+        @Override
+        void stopDriver() {
+            if (driver != null) driver.cancel();
+            driver = null;
+        }
+
+        @Override
+        boolean isDriverThread() {
+            return Bukkit.isPrimaryThread();
+        }
+
+        @Override
+        protected void schedule(Runnable task) {
+            Bukkit.getScheduler().runTask(plugin, task);
+        }
+    }
+
+    /* ------------------ Folia ------------------ */
+
+    private static final class Folia extends TriviaScheduler {
+        private ScheduledTask driver;
+
+        Folia(Plugin plugin) {
+            super(plugin);
+        }
+
+        @Override
+        void startDriver(Runnable tick) {
+            stopDriver();
+            driver = Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin, task -> tick.run(), 1L, 1L);
+        }
+
+        @Override
+        void stopDriver() {
+            if (driver != null) driver.cancel();
+            driver = null;
+        }
+
+        @Override
+        boolean isDriverThread() {
+            return Bukkit.isGlobalTickThread();
+        }
+
+        @Override
+        protected void schedule(Runnable task) {
+            Bukkit.getGlobalRegionScheduler().execute(plugin, task);
+        }
+    }
+}
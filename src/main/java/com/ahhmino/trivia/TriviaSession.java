@@ -0,0 +1,644 @@
+package com.ahhmino.trivia;
+
+import net.kyori.adventure.text.Component;
+import org.bukkit.entity.Player;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * One independent trivia loop: its own config, audience, question queues and round state.
+ *
+ * <p>Each of the session's categories is a {@link Lane} with its own queue, store rotation and
+ * prefetch state, refilled independently; fetches for different lanes run in parallel (the fetch
+ * layer's rate limiter keeps them within the API's limits). Questions are taken from the lanes by
+ * smooth weighted round-robin over those that have one ready, so a slow or exhausted category is
+ * skipped rather than stalling the loop, and doesn't build up credit while it is.
+ *
+ * <p>Sessions never schedule anything themselves. The plugin's single repeating task calls
+ * {@link #tick(long)} on every session, and each tick is a deadline check against the current
+ * phase, so an idle or waiting session costs one comparison per tick. All methods except
+ * {@link #handleAnswer} and {@link #hasActiveQuestion} must run on the driver's thread (see
+ * {@link TriviaScheduler}).
+ *
+ * <p>With question stats on, each lane holds a few candidates and asks whichever fits the
+ * audience's {@link AudienceSkill} best, rather than strictly the next one.
+ *
+ * <p>In a cluster ({@link ClusterNode}) only the leader's sessions fetch and ask; a follower's
+ * session waits for the leader's questions and shows them as remote rounds.
+ */
+final class TriviaSession {
+
+    enum Phase {
+        /** Not running (trivia disabled). */
+        IDLE,
+        /** Waiting until the deadline to try asking the next question. */
+        WAITING,
+        /** A question is on screen; the answer is revealed at the deadline or on an early win. */
+        ASKING,
+        /** The answer has been shown; the next question is asked at the deadline. */
+        REVEALED
+    }
+
+    private static final int NO_PLAYERS_RETRY_TICKS = 20 * 10;
+    private static final int NO_QUESTION_RETRY_TICKS = 20 * 5;
+    private static final int STORE_ATTEMPTS = 16; // stored questions tried per ask before giving up on repeats
+    private static final int FOLLOWER_POLL_TICKS = 20;
+    private static final int REMOTE_GRACE_TICKS = 20 * 3; // a remote question's own deadline, past the leader's
+    private static final int CANDIDATES = 4; // questions each lane chooses between when selecting by skill
+
+    private final TriviaPlugin plugin;
+    private final QuestionFetcher fetcher;
+    private volatile SessionConfig config; // audience is read by the chat threads
+    private QuestionRenderer renderer;
+    private volatile AnswerThrottle throttle; // read by the async chat threads
+    private AudienceSkill skill; // null if selection by skill is off
+    private final Lane[] lanes;
+
+    private Phase phase = Phase.IDLE;
+    private long deadline;
+    private long round;
+    private boolean winnerAnnounced;
+    private volatile ActiveQuestion active; // read by the async chat threads
+    private QuestionStats.Summary activeStats; // the active question's stats when it was asked
+    private ActiveQuestion shown; // on screen, or revealed until the next question
+
+    // What the last status snapshot was taken from
+    private Phase statusPhase;
+    private long statusRound = -1;
+    private long statusDeadline;
+    private boolean statusWinner;
+    private int statusQueued = -1;
+
+    TriviaSession(TriviaPlugin plugin, QuestionFetcher fetcher, SessionConfig config) {
+        this.plugin = plugin;
+        this.fetcher = fetcher;
+        this.config = config;
+        this.renderer = new QuestionRenderer(config.chatPrefix(), config.freeText());
+        this.throttle = throttle(config);
+        this.skill = config.targetSolveRate() > 0 ? new AudienceSkill(config.targetSolveRate()) : null;
+        List<SessionConfig.Category> categories = config.categories();
+        this.lanes = new Lane[categories.size()];
+        for (int i = 0; i < lanes.length; i++) lanes[i] = new Lane(categories.get(i), config);
+    }
+
+    String name() {
+        return config.name();
+    }
+
+    SessionConfig config() {
+        return config;
+    }
+
+    Phase phase() {
+        return phase;
+    }
+
+    /** The latest round asked or followed; driver thread only. */
+    long round() {
+        return round;
+    }
+
+    /** Applies new timing/prefix/audience settings; the categories must be unchanged so the queues stay valid. */
+    void reconfigure(SessionConfig cfg) {
+        if (cfg.targetSolveRate() != config.targetSolveRate()) {
+            skill = cfg.targetSolveRate() > 0 ? new AudienceSkill(cfg.targetSolveRate()) : null;
+        }
+        this.config = cfg;
+        this.renderer = new QuestionRenderer(cfg.chatPrefix(), cfg.freeText());
+        this.throttle = throttle(cfg);
+        for (Lane lane : lanes) lane.prefetch.reconfigure(cfg, lane.share(cfg));
+    }
+
+    /* ------------------ Lifecycle ------------------ */
+
+    void start(long now) {
+        if (phase != Phase.IDLE) return;
+        phase = Phase.WAITING;
+        deadline = now;
+    }
+
+    void stop() {
+        phase = Phase.IDLE;
+        ActiveQuestion current = active;
+        active = null;
+        if (current != null) current.markRevealed(); // an answer already in flight can't win an abandoned round
+    }
+
+    /** Drops the current round and asks a new question on the next tick. */
+    void restart(long now) {
+        stop();
+        start(now);
+    }
+
+    /** Asks the next question immediately, abandoning the current round. */
+    void askNow(long now) {
+        stop();
+        phase = Phase.WAITING;
+        askNext(now);
+    }
+
+    /** Stops the loop, cancels any fetch and releases the store rotations. */
+    void close() {
+        stop();
+        resetQueue();
+        for (Lane lane : lanes) lane.release();
+    }
+
+    /* ------------------ State Machine ------------------ */
+
+    void tick(long now) {
+        switch (phase) {
+            case IDLE -> { }
+            case WAITING -> {
+                if (now >= deadline) askNext(now);
+            }
+            case ASKING -> {
+                ActiveQuestion current = active;
+                boolean announced = announceWinner(current);
+                boolean early = announced && plugin.earlyReveal() && current != null && !current.isRemote();
+                if (early || now >= deadline) reveal(now);
+            }
+            case REVEALED -> {
+                if (now >= deadline) askNext(now);
+            }
+        }
+    }
+
+    private void askNext(long now) {
+        SessionConfig cfg = config;
+        ClusterNode cluster = plugin.cluster();
+        if (cluster != null && !cluster.isLeader()) {
+            waitUntil(now + FOLLOWER_POLL_TICKS);
+            return;
+        }
+        if (!cfg.audience().hasMembers()) {
+            waitUntil(now + NO_PLAYERS_RETRY_TICKS);
+            return;
+        }
+
+        refill();
+
+        TriviaQuestion q = nextQuestion();
+        if (q == null) {
+            waitUntil(now + NO_QUESTION_RETRY_TICKS);
+            return;
+        }
+        round++;
+        show(q, false, now + cfg.answerDelayTicks());
+        if (cluster != null) cluster.publishQuestion(name(), round, q, active.choices(), cfg.answerDelayTicks());
+    }
+
+    private void show(TriviaQuestion q, boolean remote, long until) {
+        SessionConfig cfg = config;
+        FingerprintIndex recent = plugin.recentQuestions();
+        if (recent != null) recent.record(q.fingerprint());
+
+        // Decode the choices and render both messages once, up front; delivery is then a single
+        // broadcast each, and everything else this round reads the choices from the ActiveQuestion
+        List<String> choices = q.choices();
+        Component questionMessage = renderer.question(q, choices);
+        AnswerMatcher typed = cfg.freeText() ? plugin.answerMatcher(choices.get(q.correctIndex()), cfg.maxTypos()) : null;
+        throttle.nextRound();
+        QuestionStats stats = plugin.questionStats();
+        activeStats = stats != null ? stats.get(q.fingerprint()) : null;
+        active = new ActiveQuestion(q, choices, round, remote, renderer.answer(q, choices), typed);
+        shown = active;
+        winnerAnnounced = false;
+        Journal journal = plugin.journal();
+        if (journal != null) {
+            journal.add(new Journal.Asked(System.currentTimeMillis(), name(), round, q.fingerprint(),
+                    q.question(), choices, q.correctIndex()));
+        }
+        broadcast(questionMessage);
+
+        phase = Phase.ASKING;
+        deadline = until;
+    }
+
+    private void reveal(long now) {
+        ActiveQuestion current = active;
+        active = null;
+        if (current != null) {
+            current.markRevealed();
+            announceWinner(current); // a win may have landed after this tick's earlier check
+
+            boolean solved = current.winner() != null;
+            Leaderboard lb = plugin.leaderboard();
+            if (lb != null && !solved) lb.recordNoWinner(name());
+            broadcast(current.answerMessage());
+
+            QuestionStats stats = plugin.questionStats();
+            if (stats != null) stats.round(current.question().fingerprint(), solved);
+            Journal journal = plugin.journal();
+            if (journal != null) {
+                ActiveQuestion.Win win = current.winner();
+                journal.add(new Journal.Revealed(System.currentTimeMillis(), name(), current.round(),
+                        win != null ? win.player() : null, win != null ? win.name() : null, win != null ? win.millis() : -1));
+            }
+            if (skill != null && activeStats != null) skill.observe(activeStats, solved);
+
+            ClusterNode cluster = plugin.cluster();
+            if (cluster != null && !current.isRemote()) cluster.publishReveal(name(), current.round());
+        }
+
+        phase = Phase.REVEALED;
+        deadline = now + config.betweenQuestionsDelayTicks();
+    }
+
+    /** Broadcasts the round's winner once; true only on the tick that does so. */
+    private boolean announceWinner(ActiveQuestion current) {
+        if (current == null || winnerAnnounced) return false;
+        ActiveQuestion.Win win = current.winner();
+        if (win == null) return false;
+        winnerAnnounced = true;
+        broadcast(renderer.winner(win.name(), win.millis()));
+
+        ClusterNode cluster = plugin.cluster();
+        if (cluster != null && !current.isRemote()) cluster.publishWinner(name(), current.round(), win);
+        return true;
+    }
+
+    private void waitUntil(long until) {
+        phase = Phase.WAITING;
+        deadline = until;
+    }
+
+    private void broadcast(Component message) {
+        long start = System.nanoTime();
+        SessionAudience audience = config.audience();
+        if (!audience.hasMembers()) return;
+        audience.audience().sendMessage(message);
+        plugin.metrics().broadcastTime.record(System.nanoTime() - start);
+    }
+
+    /* ------------------ Cluster Rounds ------------------ */
+
+    /** Shows the leader's question; its reveal comes from the leader, or from our own deadline if that goes quiet. */
+    void showRemote(long round, TriviaQuestion q, long answerTicks, long now) {
+        if (phase == Phase.IDLE) return;
+        this.round = Math.max(this.round, round);
+        ActiveQuestion current = active;
+        if (current != null) current.markRevealed(); // a question we asked before the leader took over
+        show(q, true, now + answerTicks + REMOTE_GRACE_TICKS);
+    }
+
+    void revealRemote(long round, long now) {
+        ActiveQuestion current = active;
+        if (phase == Phase.ASKING && current != null && current.isRemote() && current.round() == round) reveal(now);
+    }
+
+    /** Leader: a follower's player answered correctly; the first claim to arrive wins. */
+    void claimRemote(long round, ActiveQuestion.Win claim) {
+        ActiveQuestion current = active;
+        if (current == null || current.isRemote() || current.round() != round) return;
+        current.tryWin(claim);
+    }
+
+    /** Follower: the leader's verdict. The win counts on the server the player is on. */
+    void winnerRemote(long round, ActiveQuestion.Win win) {
+        ActiveQuestion current = active;
+        if (current == null || !current.isRemote() || current.round() != round) return;
+        if (current.tryWin(win) == null || win.origin() != null) return;
+        Leaderboard lb = plugin.leaderboard();
+        if (lb != null) lb.recordWin(name(), win.player(), win.name(), win.millis());
+    }
+
+    /* ------------------ Answers (async chat thread) ------------------ */
+
+    boolean hasActiveQuestion() {
+        return active != null;
+    }
+
+    /**
+     * Judges a chat message against this session's question; true if it won the round. A player
+     * out of attempts is turned away before the message is looked at; a message that isn't an
+     * answer at all gives its attempt back. A correct answer to a remote question is sent to the
+     * cluster leader, which decides the winner.
+     */
+    boolean handleAnswer(Player player, String message) {
+        ActiveQuestion current = active;
+        if (current == null || !config.audience().includes(player)) return false;
+        AnswerThrottle limits = throttle;
+        if (!limits.acquire(player.getUniqueId())) return false;
+
+        ActiveQuestion.Verdict verdict = current.judge(message);
+        if (verdict == ActiveQuestion.Verdict.NOT_AN_ANSWER) {
+            limits.refund(player.getUniqueId());
+            return false;
+        }
+        QuestionStats stats = plugin.questionStats();
+        boolean correct = verdict == ActiveQuestion.Verdict.CORRECT;
+        long elapsed = current.elapsedMillis();
+        if (stats != null) stats.answered(current.question().fingerprint(), correct, elapsed);
+        Journal journal = plugin.journal();
+        if (journal != null) {
+            journal.add(new Journal.Attempt(System.currentTimeMillis(), name(), current.round(),
+                    player.getUniqueId(), player.getName(), message, correct, elapsed));
+        }
+        if (!correct) return false;
+
+        if (current.isRemote()) {
+            ClusterNode cluster = plugin.cluster();
+            if (cluster != null && current.tryClaim()) {
+                cluster.claim(name(), current.round(), player.getUniqueId(), player.getName(), current.elapsedMillis());
+            }
+            return false;
+        }
+
+        ActiveQuestion.Win win = current.tryWin(player.getUniqueId(), player.getName());
+        if (win == null) return false;
+
+        Leaderboard lb = plugin.leaderboard();
+        if (lb != null) lb.recordWin(name(), win.player(), win.name(), win.millis());
+        return true;
+    }
+
+    /** Forgets a player's answer attempts; called when they leave. */
+    void forget(UUID player) {
+        throttle.forget(player);
+    }
+
+    private static AnswerThrottle throttle(SessionConfig cfg) {
+        return new AnswerThrottle(cfg.attemptsPerQuestion(), cfg.attemptsPerSecond(), cfg.attemptBurst());
+    }
+
+    /* ------------------ Questions ------------------ */
+
+    /** Starts a fetch for every lane that has dropped below its low-water mark. */
+    void refill() {
+        if (!config.audience().hasMembers()) {
+            plugin.getLogger().fine("Skipping fetch for " + name() + ": nobody in its audience.");
+            return;
+        }
+        for (Lane lane : lanes) {
+            if (lane.queued() < lane.lowWater(config)) lane.fetch(config);
+        }
+    }
+
+    /**
+     * Empties the queues and cancels any in-flight fetches. Responses that still arrive afterwards
+     * belong to an old generation and are dropped before parsing.
+     */
+    void resetQueue() {
+        for (Lane lane : lanes) lane.reset();
+    }
+
+    /**
+     * The next question by weighted round-robin over the lanes with one ready. A lane whose queue
+     * and stored questions are empty, or turn out to hold only recent repeats, sits this ask out.
+     */
+    private TriviaQuestion nextQuestion() {
+        boolean[] skip = new boolean[lanes.length];
+        for (int tries = 0; tries < lanes.length; tries++) {
+            int i = pick(skip);
+            if (i < 0) return null;
+            TriviaQuestion q = lanes[i].next();
+            if (q != null) {
+                lanes[i].prefetch.asked();
+                return q;
+            }
+            skip[i] = true;
+        }
+        return null;
+    }
+
+    /** Smooth weighted round-robin among lanes that aren't skipped and have something queued or stored. */
+    private int pick(boolean[] skip) {
+        int best = -1;
+        int total = 0;
+        for (int i = 0; i < lanes.length; i++) {
+            Lane lane = lanes[i];
+            if (skip[i] || !lane.hasQuestions()) continue;
+            lane.current += lane.weight;
+            total += lane.weight;
+            if (best < 0 || lane.current > lanes[best].current) best = i;
+        }
+        if (best >= 0) lanes[best].current -= total;
+        return best;
+    }
+
+    /** Questions waiting in the queues; safe from any thread. */
+    int queueSize() {
+        int n = 0;
+        for (Lane lane : lanes) n += lane.queued();
+        return n;
+    }
+
+    /** Whether anything {@link #statusView} shows has changed since the last call; driver thread only. */
+    boolean statusChanged() {
+        int queued = queueSize();
+        if (phase == statusPhase && round == statusRound && deadline == statusDeadline
+                && winnerAnnounced == statusWinner && queued == statusQueued) {
+            return false;
+        }
+        statusPhase = phase;
+        statusRound = round;
+        statusDeadline = deadline;
+        statusWinner = winnerAnnounced;
+        statusQueued = queued;
+        return true;
+    }
+
+    /**
+     * What the status endpoint shows for this session; driver thread only. The answer is left out
+     * until it's revealed, and so are the choices of a free-text question.
+     */
+    StatusBoard.SessionView statusView(long now) {
+        long wall = System.currentTimeMillis();
+        long at = wall + (deadline - now) * 50;
+        StatusBoard.QuestionView question = null;
+        ActiveQuestion q = shown;
+        if (q != null && (phase == Phase.ASKING || phase == Phase.REVEALED)) {
+            boolean revealed = phase == Phase.REVEALED;
+            TriviaQuestion tq = q.question();
+            ActiveQuestion.Win win = winnerAnnounced ? q.winner() : null;
+            question = new StatusBoard.QuestionView(q.round(), tq.question(),
+                    revealed || !config.freeText() ? q.choices() : null,
+                    wall - q.elapsedMillis(), revealed ? -1 : at,
+                    revealed ? q.choices().get(tq.correctIndex()) : null,
+                    win != null ? win.name() : null, win != null ? win.millis() : -1);
+        }
+        return new StatusBoard.SessionView(name(), config.audience().toString(), phase.name().toLowerCase(Locale.ROOT),
+                round, queueSize(), phase == Phase.WAITING || phase == Phase.REVEALED ? at : -1, question);
+    }
+
+    String status() {
+        StringBuilder out = new StringBuilder(name()).append(" [").append(config.audience()).append("] ")
+                .append(phase.name().toLowerCase(Locale.ROOT));
+        ActiveQuestion current = active;
+        if (current != null && current.isRemote()) out.append(" (leader's round ").append(current.round()).append(')');
+        if (skill != null && plugin.questionStats() != null) out.append(" | ").append(skill.describe());
+        for (Lane lane : lanes) {
+            out.append(lanes.length > 1 ? "\n    " + lane.key + " (weight " + lane.weight + ")" : "")
+                    .append(" | Queue=").append(lane.queued())
+                    .append(" | Stored=").append(lane.selection != null ? String.valueOf(lane.selection.size()) : "off");
+            if (config.adaptivePrefetch()) out.append(" | Prefetch ").append(lane.prefetch.describe(lane.query.amount()));
+            if (lane.isFetching()) out.append(" | fetching");
+        }
+        return out.toString();
+    }
+
+    /* ------------------ Lanes ------------------ */
+
+    /**
+     * One category's queue, store rotation, in-flight fetch and prefetch state. Driver thread only,
+     * except {@link #queued()}.
+     */
+    private final class Lane {
+        final String key;
+        final FetchQuery query;
+        final int weight;
+        final QuestionPipeline queue = new QuestionPipeline();
+        final ArrayDeque<TriviaQuestion> held = new ArrayDeque<>(CANDIDATES); // taken from the queue, not yet asked
+        volatile int heldCount; // held.size() as of the driver's last change, for other threads
+        final PrefetchController prefetch;
+        QuestionStore.Selection selection; // null if the store is disabled
+        QuestionFetcher.InFlight inFlight;
+        boolean inFlightTimed; // its latency has been fed to the prefetch controller
+        int current;           // smooth weighted round-robin counter
+
+        Lane(SessionConfig.Category category, SessionConfig cfg) {
+            this.key = category.key();
+            this.query = category.query();
+            this.weight = category.weight();
+            this.prefetch = new PrefetchController(cfg, share(cfg));
+            QuestionStore store = fetcher.store();
+            this.selection = store != null ? store.select(query.storeFilter()) : null;
+        }
+
+        /** This lane's fraction of the session's questions. */
+        double share(SessionConfig cfg) {
+            int total = 0;
+            for (SessionConfig.Category c : cfg.categories()) total += c.weight();
+            return (double) weight / total;
+        }
+
+        boolean isFetching() {
+            return inFlight != null && inFlight.generation() == queue.generation() && !inFlight.isDone();
+        }
+
+        /** Refill below this many queued questions: adaptive, or the fixed quarter-batch rule. */
+        int lowWater(SessionConfig cfg) {
+            if (!cfg.adaptivePrefetch()) return Math.max(5, cfg.fetchBatchSize() / 4);
+            timeInFlight();
+            return prefetch.lowWater();
+        }
+
+        /** Feeds the last fetch's latency to the controller once its first questions have arrived. */
+        void timeInFlight() {
+            if (inFlight == null || inFlightTimed) return;
+            long latency = inFlight.latencyNanos();
+            if (latency < 0) return;
+            inFlightTimed = true;
+            prefetch.fetched(latency);
+        }
+
+        void fetch(SessionConfig cfg) {
+            if (isFetching()) return;
+            int amount = cfg.adaptivePrefetch() ? prefetch.batchSize(query.amount()) : query.amount();
+            timeInFlight();
+            inFlight = fetcher.fetch(key, query, amount, queue);
+            inFlightTimed = false;
+        }
+
+        /** Questions waiting, counting those held as candidates; safe from any thread (approximate). */
+        int queued() {
+            return queue.size() + heldCount;
+        }
+
+        void reset() {
+            queue.clear();
+            held.clear();
+            heldCount = 0;
+            if (inFlight != null) inFlight.cancel();
+            inFlight = null;
+            inFlightTimed = false;
+        }
+
+        void release() {
+            QuestionStore store = fetcher.store();
+            if (store != null && selection != null) store.release(selection);
+            selection = null;
+        }
+
+        boolean hasQuestions() {
+            return queued() > 0 || (selection != null && selection.size() > 0);
+        }
+
+        /**
+         * The next question to ask: with selection by skill, the best fit among a few candidates
+         * (the rest stay held for next time); otherwise simply the next fresh one.
+         */
+        TriviaQuestion next() {
+            TriviaQuestion q = pick();
+            heldCount = held.size();
+            return q;
+        }
+
+        private TriviaQuestion pick() {
+            QuestionStats stats = plugin.questionStats();
+            AudienceSkill fit = skill;
+            if (stats == null || fit == null) {
+                TriviaQuestion q = held.poll();
+                return q != null && !isRecent(q) ? q : nextFresh();
+            }
+            held.removeIf(this::isRecent); // asked by another session since they were taken
+            while (held.size() < CANDIDATES) {
+                TriviaQuestion q = nextFresh();
+                if (q == null) break;
+                held.add(q);
+            }
+            TriviaQuestion best = null;
+            double bestMisfit = Double.MAX_VALUE;
+            for (TriviaQuestion q : held) {
+                double misfit = fit.misfit(stats.get(q.fingerprint()));
+                if (misfit < bestMisfit) {
+                    best = q;
+                    bestMisfit = misfit;
+                }
+            }
+            if (best != null) held.remove(best);
+            return best;
+        }
+
+        private boolean isRecent(TriviaQuestion q) {
+            FingerprintIndex recent = plugin.recentQuestions();
+            return recent != null && recent.contains(q.fingerprint());
+        }
+
+        /**
+         * The next question from the queue, falling back to the store, skipping anything asked
+         * inside the repeat window. The queue was filtered when it was filled, but duplicates
+         * within it, or questions another session has asked since, are only caught here.
+         */
+        private TriviaQuestion nextFresh() {
+            FingerprintIndex recent = plugin.recentQuestions();
+            TriviaQuestion q;
+            while ((q = queue.poll()) != null) {
+                if (recent == null || !recent.contains(q.fingerprint())) return q;
+                plugin.metrics().questionsDuplicate.increment();
+            }
+            for (int i = 0; i < STORE_ATTEMPTS; i++) {
+                q = nextStored();
+                if (q == null) return null;
+                if (recent == null || !recent.contains(q.fingerprint())) return q;
+            }
+            return null;
+        }
+
+        private TriviaQuestion nextStored() {
+            QuestionStore store = fetcher.store();
+            if (store == null || selection == null) return null;
+            try {
+                return store.next(selection);
+            } catch (IOException e) {
+                plugin.getLogger().warning("Error reading question store: " + e.getMessage());
+                return null;
+            }
+        }
+    }
+}
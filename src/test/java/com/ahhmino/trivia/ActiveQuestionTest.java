@@ -0,0 +1,61 @@
+package com.ahhmino.trivia;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ActiveQuestionTest {
+
+    private static ActiveQuestion question() {
+        return new ActiveQuestion(new TriviaQuestion("q", List.of("a", "b"), 0), null, null);
+    }
+
+    @Test
+    void firstWinOnly() {
+        ActiveQuestion q = question();
+        UUID first = UUID.randomUUID();
+        assertNotNull(q.tryWin(first, "first"));
+        assertNull(q.tryWin(UUID.randomUUID(), "second"));
+        assertEquals(first, q.winner().player());
+
+        assertTrue(q.markRevealed());
+        assertFalse(q.markRevealed());
+        assertEquals(first, q.winner().player());
+    }
+
+    @Test
+    void noWinAfterTheReveal() {
+        ActiveQuestion q = question();
+        assertTrue(q.markRevealed());
+        assertNull(q.tryWin(UUID.randomUUID(), "late"));
+        assertNull(q.winner());
+    }
+
+    /** Whatever the interleaving, a win either lands before the reveal and is seen by it, or not at all. */
+    @Test
+    void revealAndWinAgreeUnderRace() throws Exception {
+        for (int i = 0; i < 20_000; i++) {
+            ActiveQuestion q = question();
+            CyclicBarrier start = new CyclicBarrier(2);
+            AtomicReference<ActiveQuestion.Win> won = new AtomicReference<>();
+            Thread chat = Thread.ofPlatform().start(() -> {
+                try {
+                    start.await();
+                } catch (Exception e) {
+                    return;
+                }
+                won.set(q.tryWin(UUID.randomUUID(), "p"));
+            });
+            start.await();
+            q.markRevealed();
+            ActiveQuestion.Win atReveal = q.winner();
+            chat.join();
+            assertSame(atReveal, won.get(), "iteration " + i);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.ahhmino.trivia;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnswerThrottleTest {
+
+    @Test
+    void limitsAttemptsPerQuestion() {
+        AnswerThrottle throttle = new AnswerThrottle(2, 0, 1);
+        UUID player = UUID.randomUUID();
+        assertTrue(throttle.acquire(player));
+        assertTrue(throttle.acquire(player));
+        assertFalse(throttle.acquire(player));
+
+        throttle.refund(player);
+        assertTrue(throttle.acquire(player));
+        assertFalse(throttle.acquire(player));
+
+        throttle.nextRound();
+        assertTrue(throttle.acquire(player));
+    }
+
+    @Test
+    void bucketAllowsBurstThenRate() {
+        AnswerThrottle throttle = new AnswerThrottle(0, 1, 3);
+        UUID player = UUID.randomUUID();
+        assertTrue(throttle.acquire(player));
+        assertTrue(throttle.acquire(player));
+        assertTrue(throttle.acquire(player));
+        assertFalse(throttle.acquire(player));
+        throttle.nextRound(); // the bucket spans questions
+        assertFalse(throttle.acquire(player));
+    }
+
+    @Test
+    void forgetKeepsOtherPlayersCounts() {
+        AnswerThrottle throttle = new AnswerThrottle(1, 0, 1);
+        List<UUID> players = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            UUID p = UUID.randomUUID();
+            players.add(p);
+            assertTrue(throttle.acquire(p));
+        }
+        assertEquals(2_000, throttle.size());
+        for (int i = 0; i < players.size(); i += 2) throttle.forget(players.get(i));
+        assertEquals(1_000, throttle.size());
+        for (int i = 0; i < players.size(); i++) {
+            assertEquals(i % 2 == 0, throttle.acquire(players.get(i)), "player " + i);
+        }
+    }
+
+    @Test
+    void nilUuidIsAnOrdinaryPlayer() {
+        AnswerThrottle throttle = new AnswerThrottle(2, 0, 1);
+        UUID nil = new UUID(0, 0);
+        assertTrue(throttle.acquire(nil));
+        assertTrue(throttle.acquire(nil));
+        assertFalse(throttle.acquire(nil));
+        assertEquals(1, throttle.size());
+
+        UUID other = UUID.randomUUID();
+        assertTrue(throttle.acquire(other));
+        throttle.forget(nil);
+        assertEquals(1, throttle.size());
+        assertTrue(throttle.acquire(nil));
+        assertTrue(throttle.acquire(other));
+        assertFalse(throttle.acquire(other), "the other player's count was lost when nil was removed");
+    }
+
+    /** Chat threads racing over the same players never hand out more attempts than the limit. */
+    @Test
+    void concurrentAcquiresRespectTheLimit() throws InterruptedException {
+        int limit = 3;
+        int players = 500;
+        int threads = 8;
+        AnswerThrottle throttle = new AnswerThrottle(limit, 0, 1);
+        UUID[] ids = new UUID[players];
+        for (int i = 0; i < players; i++) ids[i] = UUID.randomUUID();
+
+        for (int round = 0; round < 5; round++) {
+            AtomicIntegerArray granted = new AtomicIntegerArray(players);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> running = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                running.add(Thread.ofPlatform().start(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int n = 0; n < limit * 2; n++) {
+                        for (int i = 0; i < players; i++) {
+                            if (throttle.acquire(ids[i])) granted.incrementAndGet(i);
+                        }
+                    }
+                }));
+            }
+            start.countDown();
+            for (Thread t : running) t.join();
+            for (int i = 0; i < players; i++) assertEquals(limit, granted.get(i), "player " + i + " in round " + round);
+            throttle.nextRound();
+        }
+        assertEquals(players, throttle.size());
+    }
+}
@@ -0,0 +1,255 @@
+package com.ahhmino.trivia;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs real nodes over loopback TCP with the startup grace and redial interval shrunk. Rounds are
+ * handed over on the transport threads rather than a server's driver thread and recorded as they
+ * arrive.
+ */
+class ClusterNodeTest {
+
+    private static final String SECRET = "correct horse battery staple";
+    private static final long GRACE_MILLIS = 200;
+    private static final long RECONNECT_MILLIS = 100;
+
+    private final List<Member> members = new ArrayList<>();
+    private final Queue<String> warnings = new ConcurrentLinkedQueue<>();
+    private final Logger log = Logger.getLogger("ClusterNodeTest");
+    private long now;
+
+    {
+        log.setUseParentHandlers(false);
+        log.addHandler(new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                if (record.getLevel().intValue() >= java.util.logging.Level.WARNING.intValue()) {
+                    warnings.add(record.getMessage());
+                }
+            }
+
+            @Override
+            public void flush() { }
+
+            @Override
+            public void close() { }
+        });
+    }
+
+    /** One node and the rounds it was handed, by kind. */
+    private record Member(ClusterNode node, InetSocketAddress address, Queue<Long> shown, Queue<Long> revealed,
+                          Queue<ActiveQuestion.Win> claims, Queue<ActiveQuestion.Win> winners) {
+    }
+
+    @AfterEach
+    void stop() {
+        for (Member m : members) m.node().close();
+        for (Handler h : log.getHandlers()) log.removeHandler(h);
+    }
+
+    /* ------------------ Election ------------------ */
+
+    @Test
+    void lowestLiveIdLeadsOnceEveryoneHasRedialed() throws Exception {
+        List<InetSocketAddress> ports = freePorts(3);
+        // b and c dial a before it is listening, so they only find it on a redial
+        Member b = start("b", ports.get(1), ports, SECRET);
+        Member c = start("c", ports.get(2), ports, SECRET);
+        Member a = start("a", ports.get(0), ports, SECRET);
+
+        awaitLeader(a, a, b, c);
+        assertTrue(a.node().isLeader());
+        assertFalse(b.node().isLeader());
+        assertFalse(c.node().isLeader());
+    }
+
+    /* ------------------ Rounds ------------------ */
+
+    @Test
+    void claimGoesToTheLeaderAndItsWinnerComesBack() throws Exception {
+        List<InetSocketAddress> ports = freePorts(3);
+        Member a = start("a", ports.get(0), ports, SECRET);
+        Member b = start("b", ports.get(1), ports, SECRET);
+        Member c = start("c", ports.get(2), ports, SECRET);
+        awaitLeader(a, a, b, c);
+
+        UUID player = UUID.randomUUID();
+        c.node().claim("s", 7, player, "Steve", 1234);
+        await(() -> !a.claims().isEmpty(), "leader never got the claim");
+        ActiveQuestion.Win claim = a.claims().poll();
+        assertEquals(player, claim.player());
+        assertEquals(1234, claim.millis());
+        assertEquals("c", claim.origin());
+
+        a.node().publishWinner("s", 7, claim);
+        await(() -> !b.winners().isEmpty() && !c.winners().isEmpty(), "followers never got the winner");
+        assertEquals("c", b.winners().poll().origin());
+        assertNull(c.winners().poll().origin(), "the winner's own server records the win as local");
+        assertTrue(b.claims().isEmpty() && c.claims().isEmpty(), "a follower judged a claim");
+    }
+
+    @Test
+    void onlyTheLeadersRoundsAreFollowed() throws Exception {
+        List<InetSocketAddress> ports = freePorts(3);
+        Member a = start("a", ports.get(0), ports, SECRET);
+        Member b = start("b", ports.get(1), ports, SECRET);
+        Member c = start("c", ports.get(2), ports, SECRET);
+        awaitLeader(a, a, b, c);
+
+        TriviaQuestion q = new TriviaQuestion("q", List.of("x", "y"), 1);
+        b.node().publishQuestion("s", 5, q, q.choices(), 100);
+        b.node().publishReveal("s", 5);
+        b.node().claim("s", 6, UUID.randomUUID(), "Alex", 10); // arrives after b's earlier messages
+        await(() -> !a.claims().isEmpty(), "leader never got the claim");
+        a.node().publishQuestion("s", 8, q, q.choices(), 100);
+        a.node().publishReveal("s", 8);
+        await(() -> !c.revealed().isEmpty(), "follower never got the leader's reveal");
+
+        assertEquals(List.of(8L), List.copyOf(c.shown()));
+        assertEquals(List.of(8L), List.copyOf(c.revealed()));
+        assertTrue(a.shown().isEmpty() && a.revealed().isEmpty(), "the leader followed a follower");
+    }
+
+    /* ------------------ Handshake ------------------ */
+
+    @Test
+    void wrongSecretIsRejected() throws Exception {
+        List<InetSocketAddress> ports = freePorts(2);
+        Member a = start("a", ports.get(0), ports, SECRET);
+        // would lead if it were let in: "0" sorts before "a"
+        Member rogue = start("0", ports.get(1), ports, "not the secret");
+        await(() -> warnings.stream().anyMatch(w -> w.contains("wrong secret")), "no wrong-secret warning");
+
+        awaitLeader(a, a);
+        for (int i = 0; i < 10; i++) pump();
+        assertTrue(a.node().isLeader());
+        assertTrue(a.node().describe().contains("live peers=[] "), a.node().describe());
+        rogue.node().publishReveal("s", 1);
+        assertTrue(a.revealed().isEmpty());
+    }
+
+    @Test
+    void oversizedFirstFrameIsRefusedBeforeItIsRead() throws Exception {
+        List<InetSocketAddress> ports = freePorts(1);
+        start("a", ports.get(0), ports, SECRET);
+        try (Socket s = new Socket()) {
+            s.connect(ports.get(0), 1_000);
+            s.setSoTimeout(2_000);
+            DataOutputStream out = new DataOutputStream(s.getOutputStream());
+            out.writeInt(TcpClusterTransport.MAX_FRAME); // never followed by the body
+            out.flush();
+            assertEquals(-1, s.getInputStream().read(), "connection left open waiting for the frame");
+        }
+        assertTrue(warnings.stream().anyMatch(w -> w.contains("wrong secret")));
+    }
+
+    /* ------------------ Helpers ------------------ */
+
+    private Member start(String id, InetSocketAddress bind, List<InetSocketAddress> all, String secret) throws IOException {
+        List<InetSocketAddress> peers = all.stream().filter(p -> !p.equals(bind)).toList();
+        Queue<Long> shown = new ConcurrentLinkedQueue<>();
+        Queue<Long> revealed = new ConcurrentLinkedQueue<>();
+        Queue<ActiveQuestion.Win> claims = new ConcurrentLinkedQueue<>();
+        Queue<ActiveQuestion.Win> winners = new ConcurrentLinkedQueue<>();
+        ClusterNode.Rounds rounds = new ClusterNode.Rounds() {
+            @Override
+            public void show(String session, long round, TriviaQuestion q, long answerTicks) {
+                shown.add(round);
+            }
+
+            @Override
+            public void reveal(String session, long round) {
+                revealed.add(round);
+            }
+
+            @Override
+            public void claim(String session, long round, ActiveQuestion.Win claim) {
+                claims.add(claim);
+            }
+
+            @Override
+            public void winner(String session, long round, ActiveQuestion.Win win) {
+                winners.add(win);
+            }
+        };
+        TcpClusterTransport transport = new TcpClusterTransport(log, bind, peers, secret, RECONNECT_MILLIS);
+        ClusterNode node = new ClusterNode(log, Runnable::run, id, transport, rounds, GRACE_MILLIS);
+        node.start();
+        Member m = new Member(node, bind, shown, revealed, claims, winners);
+        members.add(m);
+        return m;
+    }
+
+    /** One heartbeat from every node. */
+    private void pump() throws InterruptedException {
+        now += 20;
+        for (Member m : members) m.node().tick(now);
+        Thread.sleep(20);
+    }
+
+    private void awaitLeader(Member leader, Member... all) throws InterruptedException {
+        String id = leader.node().id();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!agree(id, all)) {
+            assertTrue(System.nanoTime() < deadline, "no agreed leader after 10s: " + describe(all));
+            pump();
+        }
+    }
+
+    private static boolean agree(String leader, Member... all) {
+        for (Member m : all) {
+            if (!m.node().describe().contains("leader=" + (m.node().id().equals(leader) ? "this node" : leader) + " ")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String describe(Member... all) {
+        StringBuilder sb = new StringBuilder();
+        for (Member m : all) sb.append('\n').append(m.node().describe());
+        return sb.toString();
+    }
+
+    private void await(BooleanSupplier condition, String message) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, message);
+            pump();
+        }
+    }
+
+    private static List<InetSocketAddress> freePorts(int n) throws IOException {
+        List<ServerSocket> held = new ArrayList<>();
+        try {
+            List<InetSocketAddress> out = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                ServerSocket s = new ServerSocket(0);
+                held.add(s);
+                out.add(new InetSocketAddress("127.0.0.1", s.getLocalPort()));
+            }
+            return out;
+        } finally {
+            for (ServerSocket s : held) s.close();
+        }
+    }
+}
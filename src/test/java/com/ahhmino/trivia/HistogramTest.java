@@ -0,0 +1,43 @@
+package com.ahhmino.trivia;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistogramTest {
+
+    @Test
+    void countAtMostIncludesTheBound() {
+        Histogram h = new Histogram();
+        h.record(1023);
+        h.record(1024);
+        h.record(1025);
+        Histogram.Snapshot s = h.snapshot();
+        assertEquals(0, s.countAtMost(1022));
+        assertEquals(1, s.countAtMost(1023));
+        assertEquals(3, s.countAtMost(Long.MAX_VALUE));
+        assertEquals(0, s.countAtMost(-1));
+    }
+
+    @Test
+    void countAtMostIsExactAtEveryPowerOfTwoLessOne() {
+        Histogram h = new Histogram();
+        for (int exp = 1; exp < 40; exp++) {
+            h.record((1L << exp) - 1);
+            h.record(1L << exp);
+        }
+        Histogram.Snapshot s = h.snapshot();
+        for (int exp = 1; exp < 40; exp++) {
+            // values 2^k - 1 and 2^k for every k < exp, plus 2^exp - 1
+            assertEquals(2L * (exp - 1) + 1, s.countAtMost((1L << exp) - 1), "le 2^" + exp + "-1");
+        }
+    }
+
+    @Test
+    void smallValuesHaveTheirOwnBuckets() {
+        Histogram h = new Histogram();
+        for (int v = 0; v < 8; v++) h.record(v);
+        Histogram.Snapshot s = h.snapshot();
+        for (int v = 0; v < 8; v++) assertEquals(v + 1, s.countAtMost(v));
+    }
+}
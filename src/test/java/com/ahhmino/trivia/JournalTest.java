@@ -0,0 +1,27 @@
+package com.ahhmino.trivia;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalTest {
+
+    @TempDir
+    File folder;
+
+    @Test
+    void entriesAfterCloseAreDroppedWithoutQueueing() throws IOException {
+        Journal journal = Journal.open(folder, Logger.getLogger("JournalTest"), 1, 2, 1);
+        journal.add(new Journal.Revealed(1, "s", 1, null, null, -1));
+        journal.close(5_000);
+        assertEquals("1 records this run, 0 queued, 0 dropped", journal.describe());
+
+        for (int i = 0; i < 3; i++) journal.add(new Journal.Revealed(2, "s", 2, null, null, -1));
+        assertEquals("1 records this run, 0 queued, 3 dropped", journal.describe());
+    }
+}
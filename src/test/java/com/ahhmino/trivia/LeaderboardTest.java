@@ -0,0 +1,62 @@
+package com.ahhmino.trivia;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LeaderboardTest {
+
+    @TempDir
+    File folder;
+
+    private Leaderboard board;
+    private final UUID alice = UUID.randomUUID();
+    private final UUID bob = UUID.randomUUID();
+
+    @BeforeEach
+    void open() throws IOException {
+        board = Leaderboard.open(folder, Logger.getLogger("LeaderboardTest"), 10, 60);
+    }
+
+    @AfterEach
+    void close() {
+        board.close(1_000);
+    }
+
+    @Test
+    void streakGrowsAndBreaksWithinASession() {
+        board.recordWin("a", alice, "alice", 100);
+        board.recordWin("a", alice, "alice", 100);
+        assertEquals(2, board.get(alice).streak());
+
+        board.recordWin("a", bob, "bob", 100);
+        assertEquals(0, board.get(alice).streak());
+        assertEquals(2, board.get(alice).bestStreak());
+
+        board.recordNoWinner("a");
+        assertEquals(0, board.get(bob).streak());
+    }
+
+    @Test
+    void otherSessionsLeaveAStreakAlone() {
+        for (int round = 0; round < 3; round++) {
+            board.recordWin("a", alice, "alice", 100);
+            board.recordWin("b", bob, "bob", 100);
+            board.recordNoWinner("c");
+        }
+        assertEquals(3, board.get(alice).streak());
+        assertEquals(3, board.get(bob).streak());
+
+        board.recordNoWinner("b");
+        assertEquals(3, board.get(alice).streak());
+        assertEquals(0, board.get(bob).streak());
+    }
+}
@@ -0,0 +1,34 @@
+package com.ahhmino.trivia;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpenTdbParserTest {
+
+    private static String b64(String s) {
+        return Base64.getEncoder().encodeToString(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void decodesBase64ThroughTheScratchBuffer() {
+        OpenTdbParser parser = new OpenTdbParser("base64");
+        assertEquals("Which planet is largest?", parser.decodeBase64(b64("Which planet is largest?")));
+        assertEquals("Pokémon", parser.decodeBase64(b64("Pokémon")));
+        assertEquals("", parser.decodeBase64(""));
+        String longer = "x".repeat(5_000); // outgrows the scratch buffer
+        assertEquals(longer, parser.decodeBase64(b64(longer)));
+        assertEquals("ab", parser.decodeBase64(b64("ab")));
+    }
+
+    @Test
+    void leavesAnythingElseUnchanged() {
+        OpenTdbParser parser = new OpenTdbParser("base64");
+        assertEquals("not base64!", parser.decodeBase64("not base64!"));
+        assertEquals("abcde", parser.decodeBase64("abcde"));
+        assertEquals("YQ==YQ==", parser.decodeBase64("YQ==YQ=="));
+    }
+}
@@ -0,0 +1,263 @@
+package com.ahhmino.trivia;
+
+import com.ahhmino.trivia.StandInOpenTdb.Reply;
+import com.ahhmino.trivia.StandInOpenTdb.Request;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives {@link OpenTdbSource} against a {@link StandInOpenTdb} with scripted response codes, with
+ * the limiter interval and backoff base shrunk to milliseconds.
+ */
+class OpenTdbSourceTest {
+
+    private static final String API = "/api.php";
+    private static final String TOKEN = "/api_token.php";
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long TOLERANCE = 20 * MS; // scheduling and loopback jitter between send and arrival
+    private static final long INTERVAL = 300; // limiter interval in the spacing tests
+    private static final long ARRIVAL_JITTER = 60 * MS; // a late arrival squeezes the gap after it
+    private static final Logger LOG = Logger.getLogger("OpenTdbSourceTest");
+
+    static {
+        LOG.setUseParentHandlers(false); // scripted failures log warnings by design
+    }
+
+    private StandInOpenTdb server;
+    private long amountCapMillis = TimeUnit.MINUTES.toMillis(10);
+    private TriviaMetrics metrics;
+    private QuestionFetcher fetcher;
+    private final QuestionPipeline queue = new QuestionPipeline();
+
+    @BeforeEach
+    void start() throws IOException {
+        server = new StandInOpenTdb(0);
+        metrics = new TriviaMetrics();
+        fetcher = new QuestionFetcher(LOG, null, null, metrics);
+    }
+
+    @AfterEach
+    void stop() {
+        fetcher.close();
+        server.close();
+    }
+
+    /* ------------------ Session Tokens ------------------ */
+
+    @Test
+    void requestsATokenBeforeQuestions() throws InterruptedException {
+        use(true, 0, 50);
+        await(fetch("s", 10));
+
+        List<Request> requests = server.requests();
+        assertEquals(List.of(TOKEN, API), paths(requests));
+        assertEquals("request", requests.get(0).params().get("command"));
+        assertNotNull(requests.get(1).params().get("token"));
+        assertEquals(10, queue.size());
+    }
+
+    @Test
+    void code3RequestsANewTokenAndRetries() throws InterruptedException {
+        use(true, 0, 50);
+        server.replyToQuestions(Reply.code(3));
+        await(fetch("s", 10));
+
+        List<Request> requests = server.requests();
+        assertEquals(List.of(TOKEN, API, TOKEN, API), paths(requests));
+        assertEquals("request", requests.get(2).params().get("command"));
+        assertNotEquals(requests.get(1).params().get("token"), requests.get(3).params().get("token"));
+        assertEquals(10, queue.size());
+    }
+
+    @Test
+    void code4ResetsTheTokenAndRetries() throws InterruptedException {
+        use(true, 0, 50);
+        server.replyToQuestions(Reply.code(4));
+        await(fetch("s", 10));
+
+        List<Request> requests = server.requests();
+        assertEquals(List.of(TOKEN, API, TOKEN, API), paths(requests));
+        String token = requests.get(1).params().get("token");
+        assertEquals("reset", requests.get(2).params().get("command"));
+        assertEquals(token, requests.get(2).params().get("token"));
+        assertEquals(token, requests.get(3).params().get("token"));
+        assertEquals(10, queue.size());
+    }
+
+    /* ------------------ Amount ------------------ */
+
+    @Test
+    void code1HalvesTheAmountUntilTheTokenIsReset() throws InterruptedException {
+        use(true, 0, 50);
+        server.replyToQuestions(Reply.code(1));
+        await(fetch("s", 20));
+        assertEquals(List.of(20, 10), amounts());
+
+        await(fetch("s", 20)); // the lower amount sticks for this query
+        assertEquals(List.of(20, 10, 10), amounts());
+
+        server.replyToQuestions(Reply.code(4));
+        await(fetch("s", 20)); // a reset starts the query over at its full amount
+        assertEquals(List.of(20, 10, 10, 10, 20), amounts());
+        assertEquals(10 + 10 + 20, queue.size());
+    }
+
+    @Test
+    void aLoweredAmountLapses() throws InterruptedException {
+        amountCapMillis = 100;
+        use(false, 0, 50);
+        server.replyToQuestions(Reply.code(1));
+        await(fetch("s", 20, 5)); // a small prefetch request comes up short
+        assertEquals(List.of(5, 2), amounts());
+
+        Thread.sleep(150);
+        await(fetch("s", 20, 20));
+        assertEquals(List.of(5, 2, 20), amounts());
+    }
+
+    /* ------------------ Backoff ------------------ */
+
+    @Test
+    void backsOffExponentiallyOnRateLimit() throws InterruptedException {
+        assertBacksOff(Reply.code(5));
+    }
+
+    @Test
+    void backsOffExponentiallyOnHttpErrors() throws InterruptedException {
+        assertBacksOff(Reply.http(500));
+        assertEquals(3, metrics.fetchErrors.sum());
+    }
+
+    /**
+     * Three failures then a success. After the n-th failure in a row the next try waits a random
+     * time between half and all of {@code base * 2^(n-1)}, and the fetch stays in flight throughout.
+     */
+    private void assertBacksOff(Reply failure) throws InterruptedException {
+        long base = 100;
+        use(false, 0, base);
+        await(fetch("warmup", 1)); // open the connection so the first measured gap isn't skewed
+        int before = server.requests(API).size();
+
+        server.replyToQuestions(failure, failure, failure);
+        QuestionFetcher.InFlight inFlight = fetch("s", 10);
+        awaitRequests(API, before + 2);
+        assertFalse(inFlight.isDone(), "fetch finished while backing off");
+        assertEquals(1, queue.size());
+        await(inFlight);
+
+        List<Request> tries = server.requests(API).subList(before, before + 4);
+        assertEquals(4, server.requests(API).size() - before);
+        for (int n = 1; n <= 3; n++) {
+            long ceiling = (base << (n - 1)) * MS;
+            long gap = tries.get(n).receivedNanos() - tries.get(n - 1).receivedNanos();
+            assertTrue(gap >= ceiling / 2 - TOLERANCE, "retry " + n + " after " + gap / MS + "ms, expected >= " + ceiling / 2 / MS);
+            assertTrue(gap <= ceiling + 10 * TOLERANCE, "retry " + n + " after " + gap / MS + "ms, expected <= " + ceiling / MS);
+        }
+        assertEquals(11, queue.size());
+    }
+
+    /* ------------------ Rate Limit ------------------ */
+
+    @Test
+    void requestsStayOneIntervalApart() throws InterruptedException {
+        use(true, INTERVAL, 50);
+        await(fetch("warmup", 1)); // a cold client can land its first requests late, squeezing the next gap
+        int before = server.requests().size();
+        List<QuestionFetcher.InFlight> fetches = IntStream.range(0, 3).mapToObj(i -> fetch("s" + i, 10)).toList();
+        for (QuestionFetcher.InFlight f : fetches) await(f);
+
+        assertEquals(before + 6, server.requests().size()); // a token and a batch per session
+        assertSpaced(before);
+        assertEquals(1 + 30, queue.size());
+    }
+
+    @Test
+    void sourcesOnOneHostShareALimiter() throws InterruptedException {
+        fetcher.setSources(List.of(source("one", false, INTERVAL), source("two", false, INTERVAL)));
+        await(fetch("warmup", 1));
+        int before = server.requests().size();
+        List<QuestionFetcher.InFlight> fetches = IntStream.range(0, 4).mapToObj(i -> fetch("s", 10)).toList();
+        for (QuestionFetcher.InFlight f : fetches) await(f);
+
+        assertEquals(before + 4, server.requests().size());
+        assertSpaced(before);
+    }
+
+    @Test
+    void aReloadedSourceKeepsTheOldOnesSchedule() throws InterruptedException {
+        use(false, INTERVAL, 50);
+        await(fetch("warmup", 1));
+        int before = server.requests().size();
+        await(fetch("s", 10));
+        use(false, INTERVAL, 50); // a reload builds new source instances
+        await(fetch("s", 10));
+
+        assertEquals(before + 2, server.requests().size());
+        assertSpaced(before);
+    }
+
+    /* ------------------ Helpers ------------------ */
+
+    private void use(boolean tokens, long rateLimitMillis, long backoffBaseMillis) {
+        fetcher.setSources(List.of(new OpenTdbSource(fetcher, "standin", 1, server.url(), tokens,
+                rateLimitMillis, backoffBaseMillis, amountCapMillis)));
+    }
+
+    private OpenTdbSource source(String name, boolean tokens, long rateLimitMillis) {
+        return new OpenTdbSource(fetcher, name, 1, server.url(), tokens, rateLimitMillis, 50, amountCapMillis);
+    }
+
+    /** Every request from index {@code from} on arrived at least one limiter interval after the one before it. */
+    private void assertSpaced(int from) {
+        List<Request> requests = server.requests().stream()
+                .sorted(Comparator.comparingLong(Request::receivedNanos))
+                .toList();
+        for (int i = from; i < requests.size(); i++) {
+            long gap = requests.get(i).receivedNanos() - requests.get(i - 1).receivedNanos();
+            assertTrue(gap >= INTERVAL * MS - ARRIVAL_JITTER, "requests " + (i - 1) + " and " + i + " " + gap / MS + "ms apart");
+        }
+    }
+
+    private QuestionFetcher.InFlight fetch(String session, int amount) {
+        return fetch(session, amount, amount);
+    }
+
+    /** A fetch asking for {@code requested} of a query configured for {@code amount}, as the prefetch does. */
+    private QuestionFetcher.InFlight fetch(String session, int amount, int requested) {
+        return fetcher.fetch(session, new FetchQuery("", "", "", amount, "base64"), requested, queue);
+    }
+
+    private static void await(QuestionFetcher.InFlight fetch) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!fetch.isDone()) {
+            assertTrue(System.nanoTime() < deadline, "fetch still running after 10s");
+            Thread.sleep(5);
+        }
+    }
+
+    private void awaitRequests(String path, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (server.requests(path).size() < count) {
+            assertTrue(System.nanoTime() < deadline, "only " + server.requests(path).size() + " requests after 10s");
+            Thread.sleep(1);
+        }
+    }
+
+    private List<Integer> amounts() {
+        return server.requests(API).stream().map(r -> Integer.parseInt(r.params().get("amount"))).toList();
+    }
+
+    private static List<String> paths(List<Request> requests) {
+        return requests.stream().map(Request::path).toList();
+    }
+}
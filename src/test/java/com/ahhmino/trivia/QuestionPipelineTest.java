@@ -0,0 +1,128 @@
+package com.ahhmino.trivia;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuestionPipelineTest {
+
+    private static TriviaQuestion question(String id) {
+        return new TriviaQuestion(id, List.of("a", "b"), 0);
+    }
+
+    /** Questions are named {@code generation/producer/serial}. */
+    private static int generationOf(TriviaQuestion q) {
+        return Integer.parseInt(q.question().substring(0, q.question().indexOf('/')));
+    }
+
+    @Test
+    void deliversBatchesInOrder() {
+        QuestionPipeline pipeline = new QuestionPipeline();
+        int gen = pipeline.generation();
+        assertTrue(pipeline.publish(gen, List.of(question("1"), question("2"))));
+        assertTrue(pipeline.publish(gen, List.of(question("3"))));
+        assertEquals(3, pipeline.size());
+        assertEquals("1", pipeline.poll().question());
+        assertEquals("2", pipeline.poll().question());
+        assertEquals("3", pipeline.poll().question());
+        assertNull(pipeline.poll());
+        assertEquals(0, pipeline.size());
+    }
+
+    @Test
+    void clearDropsQueuedAndRejectsOldGeneration() {
+        QuestionPipeline pipeline = new QuestionPipeline();
+        int old = pipeline.generation();
+        pipeline.publish(old, List.of(question("1"), question("2")));
+        pipeline.poll();
+        pipeline.clear();
+
+        assertNull(pipeline.poll());
+        assertEquals(0, pipeline.size());
+        assertFalse(pipeline.publish(old, List.of(question("3"))));
+        assertNull(pipeline.poll());
+
+        assertTrue(pipeline.publish(pipeline.generation(), List.of(question("4"))));
+        assertEquals("4", pipeline.poll().question());
+    }
+
+    /**
+     * Producers publish under whatever generation they last saw while the consumer polls and
+     * clears. Nothing may be delivered twice, nothing from a cleared generation may be delivered
+     * after the clear, and everything accepted in the final generation must come out.
+     */
+    @Test
+    void concurrentPublishPollAndClear() throws Exception {
+        int producers = 4;
+        int batchesEach = 10_000;
+        QuestionPipeline pipeline = new QuestionPipeline();
+        Set<String> accepted = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            threads.add(Thread.ofPlatform().name("producer-" + p).start(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                int serial = 0;
+                for (int b = 0; b < batchesEach; b++) {
+                    int gen = pipeline.generation();
+                    if (rnd.nextInt(8) == 0) Thread.yield(); // let a clear land between capture and publish
+                    List<TriviaQuestion> batch = new ArrayList<>();
+                    int n = 1 + rnd.nextInt(5);
+                    for (int i = 0; i < n; i++) batch.add(question(gen + "/" + producer + "/" + serial++));
+                    if (pipeline.publish(gen, batch)) {
+                        for (TriviaQuestion q : batch) accepted.add(q.question());
+                    }
+                }
+            }));
+        }
+
+        Set<String> delivered = new HashSet<>();
+        int clears = 0;
+        start.countDown();
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        while (threads.stream().anyMatch(Thread::isAlive)) {
+            TriviaQuestion q = pipeline.poll();
+            if (q != null) {
+                assertEquals(pipeline.generation(), generationOf(q), "stale question delivered: " + q.question());
+                assertTrue(delivered.add(q.question()), "delivered twice: " + q.question());
+            }
+            if (rnd.nextInt(5_000) == 0) {
+                pipeline.clear();
+                clears++;
+            }
+        }
+        for (Thread t : threads) t.join(TimeUnit.SECONDS.toMillis(30));
+
+        TriviaQuestion q;
+        while ((q = pipeline.poll()) != null) {
+            assertEquals(pipeline.generation(), generationOf(q), "stale question delivered: " + q.question());
+            assertTrue(delivered.add(q.question()), "delivered twice: " + q.question());
+        }
+
+        int finalGen = pipeline.generation();
+        for (String id : accepted) {
+            if (Integer.parseInt(id.substring(0, id.indexOf('/'))) == finalGen) {
+                assertTrue(delivered.contains(id), "lost: " + id);
+            }
+        }
+        assertTrue(accepted.containsAll(delivered), "delivered something that was never accepted");
+        assertEquals(0, pipeline.size());
+        assertTrue(clears > 0, "the consumer never cleared; the run proves nothing about generations");
+    }
+}
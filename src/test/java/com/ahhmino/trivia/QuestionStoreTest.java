@@ -0,0 +1,54 @@
+package com.ahhmino.trivia;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuestionStoreTest {
+
+    private static final long LIMIT = 4096;
+
+    @TempDir
+    File folder;
+
+    private static TriviaQuestion question(int i) {
+        return new TriviaQuestion("Question number " + i + "?", List.of("right " + i, "wrong " + i), 0);
+    }
+
+    @Test
+    void appendsStopAtTheSizeLimitAndTheBankStillServes() throws IOException {
+        int stored = 0;
+        try (QuestionStore store = QuestionStore.open(folder, 16, LIMIT)) {
+            IOException full = null;
+            for (int i = 0; i < 200 && full == null; i++) {
+                try {
+                    assertTrue(store.append(question(i), 0, QuestionStore.DIFFICULTY_ANY, QuestionStore.TYPE_ANY));
+                    stored++;
+                } catch (IOException e) {
+                    full = e;
+                }
+            }
+            assertNotNull(full, "never reached the limit");
+            assertFalse(store.append(question(1000), 0, QuestionStore.DIFFICULTY_ANY, QuestionStore.TYPE_ANY),
+                    "a full store only reports the limit once");
+            assertEquals(stored, store.size());
+        }
+        assertTrue(new File(folder, "questions.dat").length() <= LIMIT);
+
+        try (QuestionStore store = QuestionStore.open(folder, 16, LIMIT)) {
+            assertEquals(stored, store.size());
+            QuestionStore.Selection all = store.select(new QuestionStore.Filter(0, QuestionStore.DIFFICULTY_ANY,
+                    QuestionStore.TYPE_ANY));
+            Set<String> served = new HashSet<>();
+            for (int i = 0; i < stored; i++) served.add(store.next(all).question());
+            assertEquals(stored, served.size());
+        }
+    }
+}
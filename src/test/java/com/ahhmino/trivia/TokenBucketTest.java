@@ -0,0 +1,77 @@
+package com.ahhmino.trivia;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void spacesPermitsOneIntervalApart() {
+        TokenBucket bucket = new TokenBucket(1, 100, TimeUnit.MILLISECONDS);
+        assertEquals(0, bucket.reserve());
+        long second = bucket.reserve();
+        long third = bucket.reserve();
+        assertTrue(second > 90 * MS && second <= 100 * MS, "second permit waits " + second);
+        assertTrue(third > 190 * MS && third <= 200 * MS, "third permit waits " + third);
+    }
+
+    @Test
+    void burstIsImmediate() {
+        TokenBucket bucket = new TokenBucket(3, 1, TimeUnit.SECONDS);
+        assertEquals(0, bucket.reserve());
+        assertEquals(0, bucket.reserve());
+        assertEquals(0, bucket.reserve());
+        assertTrue(bucket.reserve() > 900 * MS);
+    }
+
+    @Test
+    void refillsWhileIdle() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(1, 50, TimeUnit.MILLISECONDS);
+        bucket.reserve();
+        Thread.sleep(60);
+        assertEquals(0, bucket.reserve());
+    }
+
+    /** Racing callers each get their own slot: the k-th permit handed out waits about k intervals. */
+    @Test
+    void concurrentReservationsTakeDistinctSlots() throws InterruptedException {
+        int threads = 8;
+        int each = 10;
+        TokenBucket bucket = new TokenBucket(1, 1, TimeUnit.SECONDS);
+        long[] waits = new long[threads * each];
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> running = new ArrayList<>();
+        long began = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int base = t * each;
+            running.add(Thread.ofPlatform().start(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < each; i++) waits[base + i] = bucket.reserve();
+            }));
+        }
+        start.countDown();
+        for (Thread t : running) t.join();
+        long elapsed = System.nanoTime() - began;
+
+        Arrays.sort(waits);
+        long interval = TimeUnit.SECONDS.toNanos(1);
+        for (int k = 0; k < waits.length; k++) {
+            long expected = k * interval;
+            assertTrue(waits[k] <= expected && waits[k] >= expected - elapsed,
+                    "permit " + k + " waits " + waits[k] + "ns");
+        }
+    }
+}
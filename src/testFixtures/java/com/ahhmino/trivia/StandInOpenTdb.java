@@ -0,0 +1,221 @@
+package com.ahhmino.trivia;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A local server speaking enough of the OpenTriviaDB API for the tests and the load test:
+ * {@code api.php} with {@code encode=base64} and {@code api_token.php}. Every question is new (it
+ * carries a serial number), so nothing is dropped as a repeat, tokens never run out, and each
+ * request can be held for a fixed latency to stand in for the real network.
+ *
+ * <p>Tests can script what the next requests get back (a response code or an HTTP error) and read
+ * every request as it arrived.
+ */
+final class StandInOpenTdb implements AutoCloseable {
+
+    /** A request as it reached the server. */
+    record Request(String path, Map<String, String> params, long receivedNanos) {}
+
+    /** A scripted reply: an HTTP error status, or a 200 carrying {@code response_code}. */
+    record Reply(int status, int code) {
+        static Reply code(int code) {
+            return new Reply(200, code);
+        }
+
+        static Reply http(int status) {
+            return new Reply(status, -1);
+        }
+    }
+
+    private static final String[] WORDS = {
+            "which", "of", "the", "following", "was", "first", "largest", "capital", "country", "album",
+            "released", "in", "what", "year", "who", "wrote", "novel", "element", "planet", "Pokémon",
+            "Zürich", "café", "named", "after", "how", "many", "sides", "director", "film", "team"
+    };
+
+    final LongAdder questionRequests = new LongAdder();
+    final LongAdder tokenRequests = new LongAdder();
+    final LongAdder questionsServed = new LongAdder();
+    private final Queue<Request> requests = new ConcurrentLinkedQueue<>();
+    private final Queue<Reply> questionReplies = new ConcurrentLinkedQueue<>();
+    private final Queue<Reply> tokenReplies = new ConcurrentLinkedQueue<>();
+
+    private final HttpServer server;
+    private final long latencyMillis;
+    private final AtomicLong serial = new AtomicLong();
+
+    StandInOpenTdb(long latencyMillis) throws IOException {
+        this.latencyMillis = latencyMillis;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/api.php", this::questions);
+        server.createContext("/api_token.php", this::token);
+        server.start();
+    }
+
+    /** The {@code opentdb.url} to configure. */
+    String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/api.php";
+    }
+
+    /** Queues replies for the next {@code api.php} requests; once they are used up, requests succeed again. */
+    StandInOpenTdb replyToQuestions(Reply... replies) {
+        questionReplies.addAll(List.of(replies));
+        return this;
+    }
+
+    /** Queues replies for the next {@code api_token.php} requests. */
+    StandInOpenTdb replyToTokens(Reply... replies) {
+        tokenReplies.addAll(List.of(replies));
+        return this;
+    }
+
+    /** Every request so far to {@code path} ({@code /api.php} or {@code /api_token.php}), oldest first. */
+    List<Request> requests(String path) {
+        return requests.stream().filter(r -> r.path().equals(path)).toList();
+    }
+
+    List<Request> requests() {
+        return List.copyOf(requests);
+    }
+
+    private void questions(HttpExchange ex) throws IOException {
+        questionRequests.increment();
+        Map<String, String> params = record(ex);
+        hold();
+        Reply reply = questionReplies.poll();
+        if (reply != null) {
+            scripted(ex, reply, "{\"response_code\":" + reply.code() + ",\"results\":[]}");
+            return;
+        }
+        int amount = Math.max(1, Math.min(50, intParam(params, "amount", 10)));
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        StringBuilder json = new StringBuilder(amount * 400).append("{\"response_code\":0,\"results\":[");
+        for (int i = 0; i < amount; i++) {
+            long n = serial.incrementAndGet();
+            boolean bool = rnd.nextInt(4) == 0;
+            if (i > 0) json.append(',');
+            json.append("{\"type\":").append(b64(bool ? "boolean" : "multiple"))
+                    .append(",\"difficulty\":").append(b64(new String[]{"easy", "medium", "hard"}[rnd.nextInt(3)]))
+                    .append(",\"category\":").append(b64("Load Test"))
+                    .append(",\"question\":").append(b64("#" + n + ": " + sentence(rnd, 8 + rnd.nextInt(16)) + "?"));
+            if (bool) {
+                boolean t = rnd.nextBoolean();
+                json.append(",\"correct_answer\":").append(b64(t ? "True" : "False"))
+                        .append(",\"incorrect_answers\":[").append(b64(t ? "False" : "True")).append(']');
+            } else {
+                json.append(",\"correct_answer\":").append(b64(sentence(rnd, 1 + rnd.nextInt(3))))
+                        .append(",\"incorrect_answers\":[");
+                for (int w = 0; w < 3; w++) {
+                    if (w > 0) json.append(',');
+                    json.append(b64(sentence(rnd, 1 + rnd.nextInt(3))));
+                }
+                json.append(']');
+            }
+            json.append('}');
+        }
+        questionsServed.add(amount);
+        respond(ex, 200, json.append("]}").toString());
+    }
+
+    private void token(HttpExchange ex) throws IOException {
+        tokenRequests.increment();
+        Map<String, String> params = record(ex);
+        hold();
+        Reply reply = tokenReplies.poll();
+        if (reply != null) {
+            scripted(ex, reply, "{\"response_code\":" + reply.code() + ",\"response_message\":\"Scripted\",\"token\":\"\"}");
+            return;
+        }
+        // A reset keeps the token, as OpenTriviaDB does
+        String token = "reset".equals(params.get("command")) && params.containsKey("token")
+                ? params.get("token")
+                : "standin-" + Long.toHexString(ThreadLocalRandom.current().nextLong());
+        respond(ex, 200, "{\"response_code\":0,\"response_message\":\"Token Generated Successfully!\",\"token\":\""
+                + token + "\"}");
+    }
+
+    private Map<String, String> record(HttpExchange ex) {
+        Map<String, String> params = query(ex);
+        requests.add(new Request(ex.getRequestURI().getPath(), Map.copyOf(params), System.nanoTime()));
+        return params;
+    }
+
+    private static void scripted(HttpExchange ex, Reply reply, String body) throws IOException {
+        respond(ex, reply.status(), reply.status() == 200 ? body : "Scripted failure");
+    }
+
+    private void hold() {
+        if (latencyMillis <= 0) return;
+        try {
+            Thread.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void respond(HttpExchange ex, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json");
+        ex.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> query(HttpExchange ex) {
+        Map<String, String> out = new HashMap<>();
+        String raw = ex.getRequestURI().getRawQuery();
+        if (raw == null) return out;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) out.put(pair.substring(0, eq), URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return out;
+    }
+
+    private static int intParam(Map<String, String> params, String key, int def) {
+        try {
+            return Integer.parseInt(params.getOrDefault(key, String.valueOf(def)));
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    private static String sentence(ThreadLocalRandom rnd, int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(WORDS[rnd.nextInt(WORDS.length)]);
+        }
+        sb.setCharAt(0, Character.toUpperCase(sb.charAt(0)));
+        return sb.toString();
+    }
+
+    private static String b64(String s) {
+        return '"' + Base64.getEncoder().encodeToString(s.getBytes(StandardCharsets.UTF_8)) + '"';
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}